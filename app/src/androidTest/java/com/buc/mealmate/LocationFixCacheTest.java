@@ -0,0 +1,125 @@
+package com.buc.mealmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.app.Instrumentation;
+import android.location.Location;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the fix cache in front of whatever source {@link FusedLocationFixProvider#setProvider}
+ * installs: one upstream request per checkout, a new one once the cached fix has gone stale.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocationFixCacheTest {
+
+    /** Counts requests and answers them only when told to. */
+    private static class FakeSource implements LocationFixProvider {
+        final List<Callback> pending = new ArrayList<>();
+        int requests;
+
+        @Override
+        public void getFix(Callback callback) {
+            requests++;
+            pending.add(callback);
+        }
+
+        void answer(Location location) {
+            List<Callback> callbacks = new ArrayList<>(pending);
+            pending.clear();
+            for (Callback callback : callbacks) callback.onFix(location);
+        }
+    }
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private FakeSource source;
+    private LocationFixProvider provider;
+    private final List<Location> received = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        source = new FakeSource();
+        FusedLocationFixProvider.setProvider(source);
+        provider = FusedLocationFixProvider.get(instrumentation.getTargetContext());
+    }
+
+    @After
+    public void tearDown() {
+        FusedLocationFixProvider.setProvider(null);
+    }
+
+    @Test
+    public void ticksWithinTheFreshnessWindowShareOneFix() {
+        Location fix = fixAgedMs(0);
+        instrumentation.runOnMainSync(() -> {
+            // Two ticks while the first request is still out
+            provider.getFix(received::add);
+            provider.getFix(received::add);
+            assertEquals(1, source.requests);
+            source.answer(fix);
+
+            // A later tick in the same checkout is answered from the cache
+            provider.getFix(received::add);
+        });
+
+        assertEquals(1, source.requests);
+        assertEquals(3, received.size());
+        for (Location location : received) assertSame(fix, location);
+    }
+
+    @Test
+    public void staleFixIsRefreshedWithOneRequest() {
+        Location stale = fixAgedMs(CachingLocationFixProvider.FRESHNESS_MS + 1_000);
+        Location fresh = fixAgedMs(0);
+        instrumentation.runOnMainSync(() -> {
+            provider.getFix(received::add);
+            source.answer(stale);
+
+            // The cached fix is too old: both callers wait on a single new request
+            provider.getFix(received::add);
+            provider.getFix(received::add);
+            assertEquals(2, source.requests);
+            source.answer(fresh);
+        });
+
+        assertEquals(2, source.requests);
+        assertEquals(3, received.size());
+        assertSame(stale, received.get(0));
+        assertSame(fresh, received.get(1));
+        assertSame(fresh, received.get(2));
+    }
+
+    @Test
+    public void missingFixIsNotCached() {
+        instrumentation.runOnMainSync(() -> {
+            provider.getFix(received::add);
+            source.answer(null);
+            provider.getFix(received::add);
+        });
+
+        assertEquals(2, source.requests);
+        assertNull(received.get(0));
+    }
+
+    private static Location fixAgedMs(long ageMs) {
+        Location location = new Location("test");
+        location.setLatitude(51.5007);
+        location.setLongitude(-0.1246);
+        location.setTime(System.currentTimeMillis() - ageMs);
+        location.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos() - ageMs * 1_000_000L);
+        return location;
+    }
+}
@@ -0,0 +1,177 @@
+package com.buc.mealmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.app.Instrumentation;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.buc.mealmate.data.PurchaseLocation;
+import com.buc.mealmate.data.RecipeIngredient;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Drives {@link PurchaseStateWriter} against a sink that holds each write until the test
+ * completes or fails it, so coalescing and the failure path can be checked step by step.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PurchaseStateWriterTest {
+
+    private static final int RECIPE_ID = 7;
+
+    /** One call to the sink, waiting for the test to finish it. */
+    private static class Write {
+        List<Integer> purchasedIds;
+        List<Integer> unpurchasedIds;
+        List<PurchaseLocation> upserts;
+        List<String> removals;
+        Runnable onDone;
+        RecipeRepository.Callback<RuntimeException> onError;
+    }
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final List<Write> writes = new ArrayList<>();
+    private final PurchaseStateWriter writer = new PurchaseStateWriter(
+            (recipeId, purchasedIds, unpurchasedIds, upserts, removals, onDone, onError) -> {
+                assertEquals(RECIPE_ID, recipeId);
+                Write write = new Write();
+                write.purchasedIds = purchasedIds;
+                write.unpurchasedIds = unpurchasedIds;
+                write.upserts = upserts;
+                write.removals = removals;
+                write.onDone = onDone;
+                write.onError = onError;
+                writes.add(write);
+            }, RECIPE_ID);
+
+    @Test
+    public void togglesCoalesceIntoOneWrite() {
+        PurchaseLocation salt = location("Salt");
+        instrumentation.runOnMainSync(() -> {
+            writer.setPurchased(row(1, true));
+            writer.setPurchased(row(1, false));
+            writer.setPurchased(row(1, true));
+            writer.setPurchased(row(2, false));
+            writer.putLocation(location("pepper"));
+            writer.removeLocation("Pepper");
+            writer.putLocation(salt);
+            writer.flush();
+        });
+
+        assertEquals(1, writes.size());
+        Write write = writes.get(0);
+        assertEquals(Collections.singletonList(1), write.purchasedIds);
+        assertEquals(Collections.singletonList(2), write.unpurchasedIds);
+        assertEquals(Collections.singletonList(salt), write.upserts);
+        assertEquals(Collections.singletonList("Pepper"), write.removals);
+    }
+
+    @Test
+    public void togglesDuringAWriteGoOutAfterIt() {
+        List<String> events = new ArrayList<>();
+        instrumentation.runOnMainSync(() -> {
+            writer.setOnFlushed(() -> events.add("flushed"));
+            writer.setPurchased(row(1, true));
+            writer.flush();
+            writer.setPurchased(row(2, true));
+            writer.flush(() -> events.add("idle"));
+            // Still one write in flight
+            assertEquals(1, writes.size());
+
+            writes.get(0).onDone.run();
+            assertEquals(2, writes.size());
+            assertEquals(Collections.singletonList(2), writes.get(1).purchasedIds);
+            writes.get(1).onDone.run();
+        });
+
+        assertEquals(Arrays.asList("flushed", "flushed", "idle"), events);
+        assertFalse(writer.hasPendingChanges());
+    }
+
+    @Test
+    public void failedWriteIsQueuedAgainBehindNewerToggles() {
+        PurchaseLocation milk = location("milk");
+        PurchaseLocation newerEggs = location("eggs");
+        List<RuntimeException> errors = new ArrayList<>();
+        List<String> idle = new ArrayList<>();
+        RuntimeException failure = new IllegalStateException("disk full");
+        instrumentation.runOnMainSync(() -> {
+            writer.setOnFlushFailed(errors::add);
+            writer.setPurchased(row(1, true));
+            writer.setPurchased(row(2, true));
+            writer.putLocation(milk);
+            writer.putLocation(location("eggs"));
+            writer.removeLocation("flour");
+            writer.flush(() -> idle.add("idle"));
+
+            // Toggled again while the write is out: these are newer than what failed
+            writer.setPurchased(row(2, false));
+            writer.removeLocation("Milk");
+            writer.putLocation(newerEggs);
+            writer.putLocation(location("flour"));
+            writes.get(0).onError.onResult(failure);
+        });
+
+        assertEquals(1, errors.size());
+        assertSame(failure, errors.get(0));
+        // Nobody is told the changes are saved
+        assertTrue(idle.isEmpty());
+        assertTrue(writer.hasPendingChanges());
+
+        instrumentation.runOnMainSync(writer::flush);
+        assertEquals(2, writes.size());
+        Write retry = writes.get(1);
+        assertEquals(Collections.singletonList(1), retry.purchasedIds);
+        assertEquals(Collections.singletonList(2), retry.unpurchasedIds);
+        assertEquals(2, retry.upserts.size());
+        assertSame(newerEggs, find(retry.upserts, "eggs"));
+        assertEquals("flour", find(retry.upserts, "flour").ingredient);
+        assertEquals(Collections.singletonList("Milk"), retry.removals);
+
+        instrumentation.runOnMainSync(() -> {
+            retry.onDone.run();
+            writer.flush(() -> idle.add("idle"));
+        });
+        assertEquals(Collections.singletonList("idle"), idle);
+        assertEquals(2, writes.size());
+    }
+
+    @Test
+    public void flushWithNothingQueuedRunsIdleCallbacksRightAway() {
+        List<String> idle = new ArrayList<>();
+        instrumentation.runOnMainSync(() -> writer.flush(() -> idle.add("idle")));
+        assertEquals(Collections.singletonList("idle"), idle);
+        assertTrue(writes.isEmpty());
+    }
+
+    private static RecipeIngredient row(int id, boolean purchased) {
+        RecipeIngredient row = new RecipeIngredient(RECIPE_ID, "item " + id, id);
+        row.id = id;
+        row.purchased = purchased;
+        return row;
+    }
+
+    private static PurchaseLocation location(String ingredient) {
+        return new PurchaseLocation(RECIPE_ID, ingredient, 51.5, -0.12, System.currentTimeMillis());
+    }
+
+    private static PurchaseLocation find(List<PurchaseLocation> locations, String ingredient) {
+        for (PurchaseLocation location : locations) {
+            if (location.ingredient.equalsIgnoreCase(ingredient)) return location;
+        }
+        fail("no location for " + ingredient);
+        return null;
+    }
+}
@@ -0,0 +1,186 @@
+package com.buc.mealmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.telephony.SmsManager;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.work.Configuration;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.TestWorkerBuilder;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.OutboundSms;
+import com.buc.mealmate.data.OutboundSmsDao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+
+/**
+ * Drives {@link SmsSendWorker} against a fake {@link SmsTransport} and checks how failed
+ * attempts are requeued. The outbox is an in-memory database, so the app's own is never touched.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SmsQueueRetryTest {
+
+    private static final String TEST_PHONE = "+15550100";
+    private static final long WAIT_MS = 10_000;
+
+    /** Splits into fixed-size parts and reports each part's sent result through its intent. */
+    private static class FakeTransport implements SmsTransport {
+        private final Context context;
+        private final int[] partResults;
+        private final boolean throwOnSend;
+        int sends;
+
+        FakeTransport(Context context, boolean throwOnSend, int... partResults) {
+            this.context = context;
+            this.throwOnSend = throwOnSend;
+            this.partResults = partResults;
+        }
+
+        @Override
+        public ArrayList<String> divideMessage(String text) {
+            ArrayList<String> parts = new ArrayList<>();
+            for (int i = 0; i < text.length(); i += SmsEncoder.GSM7_MULTI) {
+                parts.add(text.substring(i, Math.min(text.length(), i + SmsEncoder.GSM7_MULTI)));
+            }
+            return parts;
+        }
+
+        @Override
+        public void sendMultipart(String phoneNumber, ArrayList<String> parts,
+                                  ArrayList<PendingIntent> sentIntents, ArrayList<PendingIntent> deliveryIntents) {
+            sends++;
+            if (throwOnSend) throw new IllegalArgumentException("Invalid destination address");
+            for (int part = 0; part < parts.size(); part++) {
+                try {
+                    sentIntents.get(part).send(context, partResults[part], null);
+                } catch (PendingIntent.CanceledException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }
+    }
+
+    private Context context;
+    private AppDatabase db;
+    private OutboundSmsDao dao;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // Retries the queue schedules stay in the test driver instead of running for real
+        WorkManagerTestInitHelper.initializeTestWorkManager(context,
+                new Configuration.Builder().setExecutor(new SynchronousExecutor()).build());
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        dao = db.outboundSmsDao();
+        SmsQueue.setOutbox(dao);
+    }
+
+    @After
+    public void tearDown() {
+        SmsQueue.setTransport(null);
+        SmsQueue.setOutbox(null);
+        db.close();
+    }
+
+    @Test
+    public void failedPartRequeuesTheMessageWithBackoff() {
+        FakeTransport transport = new FakeTransport(context, false,
+                Activity.RESULT_OK, SmsManager.RESULT_ERROR_RADIO_OFF);
+        SmsQueue.setTransport(transport);
+        int id = queue(repeat('a', 200));
+
+        runWorker();
+        OutboundSms message = awaitStatus(id, OutboundSms.STATUS_QUEUED);
+
+        assertEquals(1, transport.sends);
+        assertEquals(1, message.attempts);
+        assertEquals(SmsManager.RESULT_ERROR_RADIO_OFF, message.lastError);
+        assertBackoff(message, SmsQueue.backoffMs(1));
+    }
+
+    @Test
+    public void transportErrorsBackOffExponentiallyUntilTheMessageFails() {
+        FakeTransport transport = new FakeTransport(context, true);
+        SmsQueue.setTransport(transport);
+        int id = queue("Soup: leek,potato");
+
+        for (int attempt = 1; attempt <= SmsQueue.MAX_ATTEMPTS; attempt++) {
+            runWorker();
+            OutboundSms message = dao.getById(id);
+            assertEquals(attempt, message.attempts);
+            assertEquals(SmsManager.RESULT_ERROR_GENERIC_FAILURE, message.lastError);
+            if (attempt < SmsQueue.MAX_ATTEMPTS) {
+                assertEquals(OutboundSms.STATUS_QUEUED, message.status);
+                assertBackoff(message, SmsQueue.backoffMs(attempt));
+                // Make the retry due now rather than waiting it out
+                db.getOpenHelper().getWritableDatabase().execSQL(
+                        "UPDATE outbound_sms SET next_attempt_at = 0 WHERE id = ?", new Object[]{id});
+            } else {
+                assertEquals(OutboundSms.STATUS_FAILED, message.status);
+            }
+        }
+        assertEquals(SmsQueue.MAX_ATTEMPTS, transport.sends);
+        assertEquals(60_000, SmsQueue.backoffMs(2));
+        assertEquals(30 * 60_000, SmsQueue.backoffMs(20));
+    }
+
+    private int queue(String body) {
+        dao.insertAll(Collections.singletonList(new OutboundSms(TEST_PHONE, body, System.currentTimeMillis())));
+        return count("SELECT MAX(id) FROM outbound_sms");
+    }
+
+    private void runWorker() {
+        TestWorkerBuilder.from(context, SmsSendWorker.class, Executors.newSingleThreadExecutor())
+                .build()
+                .doWork();
+    }
+
+    // Sent results arrive as broadcasts, after the worker has returned
+    private OutboundSms awaitStatus(int id, int status) {
+        long deadline = SystemClock.uptimeMillis() + WAIT_MS;
+        OutboundSms message = dao.getById(id);
+        while (message.status != status && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(50);
+            message = dao.getById(id);
+        }
+        assertEquals(status, message.status);
+        return message;
+    }
+
+    // The retry time is taken when the failure is recorded, a little after the attempt started
+    private static void assertBackoff(OutboundSms message, long backoffMs) {
+        long delay = message.nextAttemptAt - message.lastAttemptAt;
+        assertTrue("delay " + delay + " for backoff " + backoffMs,
+                delay >= backoffMs && delay < backoffMs + WAIT_MS);
+    }
+
+    private int count(String sql, Object... args) {
+        try (Cursor cursor = db.query(sql, args)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) builder.append(c);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.buc.mealmate.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays the same purchase toggles through the old flush (Room's whole-row @Update plus
+ * REPLACE for locations) and the current one ({@link RecipeDao#applyPurchaseChanges}), and
+ * compares the rows SQLite wrote, trigger writes included. Timings go to logcat under TAG.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PurchaseWriteBenchmarkTest {
+
+    private static final String TAG = "PurchaseWriteBenchmark";
+
+    private static final int INGREDIENTS = 40;
+    private static final int ROUNDS = 200;
+    // Rows ticked and unticked on alternate rounds
+    private static final int TOGGLED = 10;
+    // Rows that stay ticked and get a fresh fix every round, e.g. re-ticked at another shop
+    private static final int MOVED = 5;
+
+    // The statement Room generated for the removed @Update updateIngredients
+    private static final String WHOLE_ROW_UPDATE = "UPDATE OR ABORT `recipe_ingredient` SET `id` = ?,"
+            + "`recipe_id` = ?,`name` = ?,`position` = ?,`purchased` = ? WHERE `id` = ?";
+
+    private interface Flush {
+        void write(AppDatabase db, int recipeId, List<RecipeIngredient> changed,
+                   List<PurchaseLocation> upserts, List<String> removals);
+    }
+
+    private static class Result {
+        long rowsWritten;
+        long nanos;
+        int purchased;
+        int locations;
+    }
+
+    @Test
+    public void singleColumnFlushWritesFewerRows() {
+        Result old = run((db, recipeId, changed, upserts, removals) -> db.runInTransaction(() -> {
+            SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+            for (RecipeIngredient row : changed) {
+                sql.execSQL(WHOLE_ROW_UPDATE, new Object[]{row.id, row.recipeId, row.name, row.position,
+                        row.purchased ? 1 : 0, row.id});
+            }
+            if (!removals.isEmpty()) db.recipeDao().deleteLocations(recipeId, removals);
+            if (!upserts.isEmpty()) db.recipeDao().upsertLocations(upserts);
+        }));
+        Result current = run((db, recipeId, changed, upserts, removals) -> {
+            List<Integer> purchasedIds = new ArrayList<>();
+            List<Integer> unpurchasedIds = new ArrayList<>();
+            for (RecipeIngredient row : changed) (row.purchased ? purchasedIds : unpurchasedIds).add(row.id);
+            db.recipeDao().applyPurchaseChanges(recipeId, purchasedIds, unpurchasedIds, upserts, removals);
+        });
+
+        Log.i(TAG, "whole-row: " + old.rowsWritten + " rows, " + old.nanos / 1000000 + " ms; "
+                + "single-column: " + current.rowsWritten + " rows, " + current.nanos / 1000000 + " ms");
+
+        // Same end state, fewer writes
+        assertEquals(old.purchased, current.purchased);
+        assertEquals(old.locations, current.locations);
+        assertTrue("whole-row " + old.rowsWritten + " vs single-column " + current.rowsWritten,
+                current.rowsWritten < old.rowsWritten);
+    }
+
+    private static Result run(Flush flush) {
+        AppDatabase db = newDatabase();
+        try {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < INGREDIENTS; i++) names.add("ingredient " + i);
+            int recipeId = db.recipeDao().insertWithIngredients(new Recipe("Benchmark", ""), names);
+            List<RecipeIngredient> rows = db.recipeDao().getIngredientsFor(Collections.singletonList(recipeId));
+
+            long startChanges = totalChanges(db);
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int round = 0; round < ROUNDS; round++) {
+                boolean tick = round % 2 == 0;
+                List<RecipeIngredient> changed = new ArrayList<>();
+                List<PurchaseLocation> upserts = new ArrayList<>();
+                List<String> removals = new ArrayList<>();
+                for (int i = 0; i < TOGGLED + MOVED; i++) {
+                    RecipeIngredient row = rows.get(i);
+                    boolean moved = i >= TOGGLED;
+                    row.purchased = moved || tick;
+                    changed.add(row);
+                    if (row.purchased) {
+                        upserts.add(new PurchaseLocation(recipeId, row.name,
+                                51.5 + round * 1e-5, -0.12 + i * 1e-5, round));
+                    } else {
+                        removals.add(row.name);
+                    }
+                }
+                flush.write(db, recipeId, changed, upserts, removals);
+            }
+
+            Result result = new Result();
+            result.nanos = SystemClock.elapsedRealtimeNanos() - start;
+            result.rowsWritten = totalChanges(db) - startChanges;
+            result.purchased = count(db, "SELECT COUNT(*) FROM recipe_ingredient WHERE purchased = 1");
+            result.locations = count(db, "SELECT COUNT(*) FROM purchase_location");
+            return result;
+        } finally {
+            db.close();
+        }
+    }
+
+    private static AppDatabase newDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        return Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        DatabaseTriggers.createAll(db);
+                    }
+                })
+                .build();
+    }
+
+    // Counts rows changed by trigger programs too, so the FTS rewrites show up
+    private static long totalChanges(AppDatabase db) {
+        return count(db, "SELECT total_changes()");
+    }
+
+    private static int count(AppDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql, null)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.buc.mealmate;
+
+import android.location.Location;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shares fixes from an upstream {@link LocationFixProvider}. The last fix is cached for
+ * {@link #FRESHNESS_MS}, so ticking a basket of items at the checkout costs one request,
+ * not one per item, and callers arriving while a request is out wait for its answer.
+ * Main thread only.
+ */
+class CachingLocationFixProvider implements LocationFixProvider {
+
+    // Long enough to cover one shop's checkout, short enough to not tag the next shop
+    static final long FRESHNESS_MS = 2 * 60_000;
+
+    private final LocationFixProvider upstream;
+    private Location cachedFix;
+    private final List<Callback> waiting = new ArrayList<>();
+
+    CachingLocationFixProvider(LocationFixProvider upstream) {
+        this.upstream = upstream;
+    }
+
+    @Override
+    public void getFix(Callback callback) {
+        if (isFresh(cachedFix)) {
+            callback.onFix(cachedFix);
+            return;
+        }
+        waiting.add(callback);
+        if (waiting.size() > 1) return; // a request is already out; share its answer
+        upstream.getFix(this::deliver);
+    }
+
+    private void deliver(Location location) {
+        if (location != null) cachedFix = location;
+        List<Callback> callbacks = new ArrayList<>(waiting);
+        waiting.clear();
+        for (Callback callback : callbacks) callback.onFix(location);
+    }
+
+    private static boolean isFresh(Location location) {
+        if (location == null) return false;
+        long ageNanos = SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos();
+        return ageNanos < FRESHNESS_MS * 1_000_000L;
+    }
+}
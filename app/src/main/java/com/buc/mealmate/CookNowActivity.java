@@ -0,0 +1,108 @@
+package com.buc.mealmate;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recipes ranked by how many of their ingredients are already on hand, i.e. ticked as
+ * purchased in any recipe. Ranking comes from {@link PantryIndex}.
+ */
+public class CookNowActivity extends AppCompatActivity {
+
+    // A screenful of scrolling is plenty; the tail is recipes missing most of their list
+    private static final int MAX_RESULTS = 200;
+
+    private RecipeRepository recipeRepository;
+    private MatchAdapter adapter;
+    private TextView tvEmpty;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_cook_now);
+
+        tvEmpty = findViewById(R.id.tvCookNowEmpty);
+        RecyclerView rvCookNow = findViewById(R.id.rvCookNow);
+        rvCookNow.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new MatchAdapter();
+        rvCookNow.setAdapter(adapter);
+
+        recipeRepository = new RecipeRepository(this);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Cheap enough to redo every time: purchases made on the detail screen show up on return
+        recipeRepository.rankByPantry(MAX_RESULTS, matches -> {
+            adapter.setMatches(matches);
+            tvEmpty.setVisibility(matches.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+    }
+
+    private class MatchAdapter extends RecyclerView.Adapter<MatchAdapter.ViewHolder> {
+
+        private List<PantryIndex.Match> matches = new ArrayList<>();
+
+        void setMatches(List<PantryIndex.Match> matches) {
+            this.matches = matches;
+            notifyDataSetChanged();
+        }
+
+        @NonNull
+        @Override
+        public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View v = getLayoutInflater().inflate(R.layout.item_recipe, parent, false);
+            ViewHolder holder = new ViewHolder(v);
+            holder.itemView.findViewById(R.id.btnDelete).setVisibility(View.GONE);
+            holder.itemView.findViewById(R.id.checkboxSelect).setVisibility(View.GONE);
+            holder.itemView.findViewById(R.id.cardRecipe).setOnClickListener(view -> {
+                int pos = holder.getBindingAdapterPosition();
+                if (pos == RecyclerView.NO_POSITION) return;
+                Intent intent = new Intent(CookNowActivity.this, RecipeDetailActivity.class);
+                intent.putExtra("recipe_id", matches.get(pos).recipeId);
+                startActivity(intent);
+            });
+            return holder;
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+            PantryIndex.Match match = matches.get(position);
+            holder.tvName.setText(match.name);
+            if (match.required == 0) {
+                holder.tvStatus.setText("No ingredients");
+            } else if (match.onHand == match.required) {
+                holder.tvStatus.setText("Ready");
+            } else {
+                holder.tvStatus.setText(match.onHand + " of " + match.required + " on hand");
+            }
+        }
+
+        @Override
+        public int getItemCount() {
+            return matches.size();
+        }
+
+        class ViewHolder extends RecyclerView.ViewHolder {
+            TextView tvName, tvStatus;
+
+            ViewHolder(@NonNull View itemView) {
+                super(itemView);
+                tvName = itemView.findViewById(R.id.tvRecipeName);
+                tvStatus = itemView.findViewById(R.id.tvRecipeStatus);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.buc.mealmate;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+/**
+ * {@link LocationFixProvider} backed by the fused location provider. Screens get it through
+ * {@link #get}, wrapped in a {@link CachingLocationFixProvider} that shares one fix across a
+ * checkout's worth of ticks. Main thread only.
+ */
+public class FusedLocationFixProvider implements LocationFixProvider {
+
+    private static final long FIX_TIMEOUT_MS = 15_000;
+
+    private static LocationFixProvider override;
+    private static CachingLocationFixProvider shared;
+
+    private final FusedLocationProviderClient client;
+
+    private FusedLocationFixProvider(Context context) {
+        client = LocationServices.getFusedLocationProviderClient(context);
+    }
+
+    /**
+     * Replaces the fused provider as the source of fixes, e.g. with a fake in tests; the cache
+     * in front of it stays. Pass null to restore it. Drops any cached fix.
+     */
+    public static synchronized void setProvider(LocationFixProvider replacement) {
+        override = replacement;
+        shared = null;
+    }
+
+    // One instance per process, so the cached fix carries over from one recipe to the next
+    static synchronized LocationFixProvider get(Context context) {
+        if (shared == null) {
+            LocationFixProvider source = override != null ? override
+                    : new FusedLocationFixProvider(context.getApplicationContext());
+            shared = new CachingLocationFixProvider(source);
+        }
+        return shared;
+    }
+
+    @SuppressLint("MissingPermission") // checked by the caller
+    @Override
+    public void getFix(Callback callback) {
+        // Lets the platform answer from its own recent fix before powering up GPS
+        CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
+                .setMaxUpdateAgeMillis(CachingLocationFixProvider.FRESHNESS_MS)
+                .setDurationMillis(FIX_TIMEOUT_MS)
+                .build();
+        try {
+            client.getCurrentLocation(request, null)
+                    .addOnCompleteListener(task -> callback.onFix(task.isSuccessful() ? task.getResult() : null));
+        } catch (SecurityException e) {
+            callback.onFix(null);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.buc.mealmate;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of ints. Stores keys unboxed in one array, so adding or
+ * checking thousands of recipe ids allocates nothing beyond the occasional resize.
+ */
+public class IntSet {
+
+    private static final int EMPTY = 0; // Slot marker; the key 0 itself is tracked by hasZero
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+
+    public IntSet() {
+        this(16);
+    }
+
+    public IntSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int key) {
+        if (key == EMPTY) return hasZero;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == EMPTY) return false;
+            if (k == key) return true;
+        }
+    }
+
+    /** Returns true if the key was not already present. */
+    public boolean add(int key) {
+        if (key == EMPTY) {
+            if (hasZero) return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int i = slot(key);
+        for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) return false;
+        }
+        keys[i] = key;
+        if (++size > keys.length * LOAD_FACTOR) resize(keys.length << 1);
+        return true;
+    }
+
+    public void addAll(int[] values) {
+        for (int value : values) add(value);
+    }
+
+    /** Returns true if the key was present. */
+    public boolean remove(int key) {
+        if (key == EMPTY) {
+            if (!hasZero) return false;
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) return false;
+            i = (i + 1) & mask;
+        }
+        // Backward-shift deletion: pull later keys of the same probe run into the gap
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                gap = j;
+            }
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        hasZero = false;
+    }
+
+    public int[] toArray() {
+        int[] out = new int[size];
+        int n = 0;
+        if (hasZero) out[n++] = 0;
+        for (int k : keys) {
+            if (k != EMPTY) out[n++] = k;
+        }
+        return out;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9; // Fibonacci hashing spreads sequential ids
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void resize(int capacity) {
+        int[] old = keys;
+        keys = new int[capacity];
+        mask = capacity - 1;
+        for (int k : old) {
+            if (k == EMPTY) continue;
+            int i = slot(k);
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = k;
+        }
+    }
+}
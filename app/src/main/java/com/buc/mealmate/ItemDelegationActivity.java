@@ -4,7 +4,6 @@ import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
-import android.telephony.SmsManager;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowInsetsController;
@@ -19,6 +18,9 @@ import androidx.core.app.ActivityCompat;
 
 public class ItemDelegationActivity extends AppCompatActivity {
 
+    // Optional message text to start with, e.g. a combined shopping list
+    public static final String EXTRA_MESSAGE = "message";
+
     private EditText phoneNumberInput, messageInput;
     private Button sendButton;
 
@@ -31,6 +33,9 @@ public class ItemDelegationActivity extends AppCompatActivity {
         messageInput = findViewById(R.id.messageInput);
         sendButton = findViewById(R.id.sendButton);
 
+        String prefill = getIntent().getStringExtra(EXTRA_MESSAGE);
+        if (prefill != null) messageInput.setText(prefill);
+
         Window window = getWindow();
         window.addFlags(WindowManager.LayoutParams.FLAG_DRAWS_SYSTEM_BAR_BACKGROUNDS);
         window.setStatusBarColor(getResources().getColor(R.color.primaryColor));
@@ -71,8 +76,6 @@ public class ItemDelegationActivity extends AppCompatActivity {
             return;
         }
 
-        SmsManager smsManager = SmsManager.getDefault();
-        smsManager.sendTextMessage(phone, null, message, null, null);
-        Toast.makeText(this, "Shopping list sent!", Toast.LENGTH_SHORT).show();
+        SmsHelper.confirmAndQueue(this, phone, message, "Shopping list queued for sending");
     }
 }
@@ -2,79 +2,147 @@ package com.buc.mealmate;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
-import android.view.View;
-import android.view.Window;
-import android.view.WindowInsetsController;
-import android.view.WindowManager;
-import android.view.animation.AlphaAnimation;
-import android.view.animation.ScaleAnimation;
-import android.widget.ImageView;
-import android.widget.TextView;
+import android.os.Looper;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.splashscreen.SplashScreen;
 
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.RecipeDao;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entry point. The system splash stays up only while the database is opened and,
+ * in parallel, the session is read and its first list page warmed; then the user is routed on.
+ */
 public class LauncherActivity extends AppCompatActivity {
 
     private static final String PREFS_NAME = "MealMatePrefs";
     private static final String KEY_LOGGED_IN_USER = "loggedInUser";
+    private static final String KEY_LOGGED_IN_USER_ID = "loggedInUserId";
+    private static final int NO_USER = -1;
+
+    // Rows read ahead so the list's first page comes from a warm page cache
+    private static final int PREFETCH_ROWS = 100;
+    // Route anyway if warm-up runs long, e.g. a big migration; the list copes with a cold database
+    private static final long MAX_SPLASH_MS = 3000;
+
+    // One-time and catch-up work that runs after routing
+    private static final ExecutorService catchUpExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger pendingTasks = new AtomicInteger(2);
+    private volatile String loggedInUser;
+    private boolean routed;
+    // Main thread only
+    private boolean sessionRead;
+    private boolean waitingForSession;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        SplashScreen splashScreen = SplashScreen.installSplashScreen(this);
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_launcher);
-
-        ImageView logo = findViewById(R.id.logoImage);
-        TextView appName = findViewById(R.id.appName);
-
-        // Scale animation (zoom in)
-        ScaleAnimation scaleAnim = new ScaleAnimation(
-                0.8f, 1f, 0.8f, 1f,
-                ScaleAnimation.RELATIVE_TO_SELF, 0.5f,
-                ScaleAnimation.RELATIVE_TO_SELF, 0.5f);
-        scaleAnim.setDuration(800);
-
-        // Fade-in animation
-        AlphaAnimation fadeAnim = new AlphaAnimation(0, 1);
-        fadeAnim.setDuration(800);
-
-        // Start animations
-        logo.startAnimation(scaleAnim);
-        logo.startAnimation(fadeAnim);
-        appName.startAnimation(fadeAnim);
-
-        // Modern Status Bar styling
-        Window window = getWindow();
-        window.addFlags(WindowManager.LayoutParams.FLAG_DRAWS_SYSTEM_BAR_BACKGROUNDS);
-        window.setStatusBarColor(getResources().getColor(R.color.primaryColor));
-        window.setNavigationBarColor(getResources().getColor(R.color.primaryColor));
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            WindowInsetsController controller = window.getInsetsController();
-            if (controller != null) {
-                controller.setSystemBarsAppearance(
-                        WindowInsetsController.APPEARANCE_LIGHT_STATUS_BARS,
-                        WindowInsetsController.APPEARANCE_LIGHT_STATUS_BARS
-                );
+        splashScreen.setKeepOnScreenCondition(() -> !routed);
+
+        AppDatabase.databaseExecutor.execute(() -> {
+            // Opening runs any pending migrations
+            AppDatabase.getInstance(getApplicationContext()).getOpenHelper().getWritableDatabase();
+            onTaskDone();
+        });
+        AppDatabase.databaseExecutor.execute(() -> {
+            RecipeDao recipeDao = AppDatabase.getInstance(getApplicationContext()).recipeDao();
+            int userId;
+            try {
+                userId = readSession();
+                if (userId != NO_USER) {
+                    // The first list page comes from a warm cache
+                    if (recipeDao.claimUnowned(userId) > 0) PantryIndex.invalidate();
+                    recipeDao.getListHead(userId, PREFETCH_ROWS);
+                }
+            } finally {
+                mainHandler.post(this::onSessionRead);
+                onTaskDone();
             }
-        } else {
-            View decor = window.getDecorView();
-            decor.setSystemUiVisibility(View.SYSTEM_UI_FLAG_LIGHT_STATUS_BAR);
-        }
+            int owner = userId;
+            catchUpExecutor.execute(() -> catchUp(recipeDao, owner));
+        });
+        mainHandler.postDelayed(this::route, MAX_SPLASH_MS);
+    }
 
-        // Delay to move to next screen
-        new Handler().postDelayed(() -> {
-            SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-            String loggedInUser = prefs.getString(KEY_LOGGED_IN_USER, null);
+    // Not part of readiness, so it runs after routing and off the database pool, which the list
+    // needs for paging, search and writes
+    private void catchUp(RecipeDao recipeDao, int userId) {
+        // The old mealmate.db is folded in if it still exists
+        LegacyDatabaseImporter.runIfNeeded(getApplicationContext());
+        // Plain passwords from the old account store don't wait for a login that may never come
+        new UserRepository(getApplicationContext()).migrateLegacyUsers();
+        if (userId != NO_USER && recipeDao.claimUnowned(userId) > 0) PantryIndex.invalidate();
+        // Catches up on points from upgrades and imports; a no-op once everything has a store
+        new StoreClusterer(AppDatabase.getInstance(getApplicationContext())).clusterPending();
+    }
 
-            if (loggedInUser != null) {
-                startActivity(new Intent(LauncherActivity.this, RecipeListActivity.class));
+    // Sessions saved before accounts had ids only hold the name; look the id up once.
+    // A name that isn't in the users table yet (old-style account) has to log in again.
+    private int readSession() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        String username = prefs.getString(KEY_LOGGED_IN_USER, null);
+        int userId = prefs.getInt(KEY_LOGGED_IN_USER_ID, NO_USER);
+        if (username != null && userId == NO_USER) {
+            Integer found = new UserRepository(getApplicationContext()).findUserIdBlocking(username);
+            if (found != null) {
+                userId = found;
+                prefs.edit().putInt(KEY_LOGGED_IN_USER_ID, userId).apply();
             } else {
-                startActivity(new Intent(LauncherActivity.this, MainActivityPage.class));
+                prefs.edit().remove(KEY_LOGGED_IN_USER).apply();
+                username = null;
+            }
+        }
+        loggedInUser = username;
+        return username == null ? NO_USER : userId;
+    }
+
+    private void onTaskDone() {
+        if (pendingTasks.decrementAndGet() == 0) mainHandler.post(this::route);
+    }
+
+    private void onSessionRead() {
+        sessionRead = true;
+        if (waitingForSession) route();
+    }
+
+    private void route() {
+        if (routed || isFinishing()) return;
+
+        String user = loggedInUser;
+        if (!sessionRead) {
+            // Timed out before the session was read. A name without an id is only usable once
+            // readSession() has looked it up; the list would otherwise write recipes as NO_USER
+            SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+            user = prefs.getString(KEY_LOGGED_IN_USER, null);
+            if (user != null && prefs.getInt(KEY_LOGGED_IN_USER_ID, NO_USER) == NO_USER) {
+                waitingForSession = true;
+                return;
             }
-            finish();
-        }, 1500);  // Splash delay
+        }
+        routed = true;
+        mainHandler.removeCallbacksAndMessages(null);
+
+        if (user != null) {
+            startActivity(new Intent(this, RecipeListActivity.class));
+        } else {
+            startActivity(new Intent(this, MainActivityPage.class));
+        }
+        finish();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mainHandler.removeCallbacksAndMessages(null);
     }
 }
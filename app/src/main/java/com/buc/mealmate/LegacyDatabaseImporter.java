@@ -0,0 +1,146 @@
+package com.buc.mealmate;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.ImportProgress;
+import com.buc.mealmate.data.ImportProgressDao;
+import com.buc.mealmate.data.Recipe;
+import com.buc.mealmate.data.RecipeDao;
+import com.buc.mealmate.data.RecipeIngredient;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * One-time move of the old mealmate.db (users and recipes tables) into the Room database.
+ * Recipes are copied in id order, one batch per transaction. The last copied id is
+ * checkpointed in the same transaction, so an interrupted import resumes where it stopped
+ * without copying anything twice.
+ * The legacy file is deleted once everything has been copied. Call off the main thread.
+ */
+public final class LegacyDatabaseImporter {
+
+    private static final String LEGACY_DATABASE = "mealmate.db";
+    private static final int BATCH_SIZE = 500;
+
+    private static final String PREFS_NAME = "MealMateLegacyImport";
+    // Where the recipe checkpoint lived before import_progress; read once to resume
+    private static final String KEY_LAST_RECIPE_ID = "lastRecipeId";
+    // Re-running the user pass is harmless (existing names are skipped), so this can stay a pref
+    private static final String KEY_USERS_DONE = "usersDone";
+    private static final String SOURCE_RECIPES = "legacy_recipes";
+
+    private LegacyDatabaseImporter() {
+    }
+
+    public static synchronized void runIfNeeded(Context context) {
+        File legacyFile = context.getDatabasePath(LEGACY_DATABASE);
+        if (!legacyFile.exists()) return;
+
+        SharedPreferences progress = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        SQLiteDatabase legacy;
+        try {
+            legacy = SQLiteDatabase.openDatabase(legacyFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        } catch (SQLiteException e) {
+            return; // Unreadable; leave it for the next start rather than lose it
+        }
+        try {
+            // Accounts are hashed on the auth thread while the recipes are copied here
+            Future<?> users = progress.getBoolean(KEY_USERS_DONE, false) ? null : importUsers(context, legacy);
+            importRecipes(AppDatabase.getInstance(context), legacy, progress.getLong(KEY_LAST_RECIPE_ID, 0));
+            if (users != null) {
+                users.get();
+                progress.edit().putBoolean(KEY_USERS_DONE, true).commit();
+            }
+        } catch (SQLiteException | ExecutionException e) {
+            return; // Checkpoints are kept; the next start picks up from there
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            legacy.close();
+        }
+
+        context.deleteDatabase(LEGACY_DATABASE);
+        AppDatabase.getInstance(context).importProgressDao().clear(SOURCE_RECIPES);
+        progress.edit().clear().commit();
+    }
+
+    // Accounts are hashed into the users table; names that already exist are skipped.
+    // The rows are read here, since the legacy database is closed before the hashing is done
+    private static Future<?> importUsers(Context context, SQLiteDatabase legacy) {
+        Map<String, String> accounts = new LinkedHashMap<>();
+        if (hasTable(legacy, "users")) {
+            try (Cursor cursor = legacy.rawQuery("SELECT username, password FROM users", null)) {
+                while (cursor.moveToNext()) {
+                    String username = cursor.getString(0);
+                    String password = cursor.getString(1);
+                    if (username != null && password != null) accounts.putIfAbsent(username, password);
+                }
+            }
+        }
+        return new UserRepository(context).importAccounts(accounts);
+    }
+
+    private static void importRecipes(AppDatabase db, SQLiteDatabase legacy, long prefsLastId) {
+        if (!hasTable(legacy, "recipes")) return;
+        RecipeDao recipeDao = db.recipeDao();
+        ImportProgressDao progressDao = db.importProgressDao();
+        Long savedId = progressDao.getLastId(SOURCE_RECIPES);
+        long lastId = savedId != null ? savedId : prefsLastId;
+
+        while (true) {
+            List<Recipe> recipes = new ArrayList<>(BATCH_SIZE);
+            List<String> ingredientLists = new ArrayList<>(BATCH_SIZE);
+            long batchLastId = lastId;
+            try (Cursor cursor = legacy.rawQuery(
+                    "SELECT id, title, ingredients, instructions FROM recipes WHERE id > ? ORDER BY id LIMIT "
+                            + BATCH_SIZE, new String[]{String.valueOf(lastId)})) {
+                while (cursor.moveToNext()) {
+                    batchLastId = cursor.getLong(0);
+                    recipes.add(new Recipe(cursor.getString(1), cursor.getString(3)));
+                    ingredientLists.add(cursor.getString(2));
+                }
+            }
+            if (recipes.isEmpty()) return;
+
+            long checkpoint = batchLastId;
+            db.runInTransaction(() -> {
+                long[] ids = recipeDao.insertAll(recipes);
+                List<RecipeIngredient> rows = new ArrayList<>();
+                for (int r = 0; r < ids.length; r++) {
+                    String ingredients = ingredientLists.get(r);
+                    if (ingredients == null) continue;
+                    int position = 0;
+                    for (String s : ingredients.split(",")) {
+                        String name = s.trim();
+                        if (!name.isEmpty()) rows.add(new RecipeIngredient((int) ids[r], name, position++));
+                    }
+                }
+                recipeDao.insertIngredients(rows);
+                // Commits with the batch, so a kill can't leave it copied but not checkpointed
+                progressDao.save(new ImportProgress(SOURCE_RECIPES, checkpoint));
+            });
+
+            lastId = checkpoint;
+            if (recipes.size() < BATCH_SIZE) return;
+        }
+    }
+
+    private static boolean hasTable(SQLiteDatabase db, String table) {
+        try (Cursor cursor = db.rawQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{table})) {
+            return cursor.moveToFirst();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.buc.mealmate;
+
+import android.location.Location;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Source of "where am I now" fixes for tagging purchases. Screens only talk to this
+ * interface, so tests can install a fake with {@link FusedLocationFixProvider#setProvider}.
+ */
+public interface LocationFixProvider {
+
+    interface Callback {
+        /** Called on the main thread; null when no fix could be had. */
+        void onFix(@Nullable Location location);
+    }
+
+    /**
+     * Delivers a current fix. Sources just ask the platform; sharing a recent fix between
+     * callers is {@link CachingLocationFixProvider}'s job. The caller must hold a location permission.
+     */
+    void getFix(Callback callback);
+}
@@ -21,6 +21,7 @@ public class LoginActivity extends AppCompatActivity {
 
     private static final String PREFS_NAME = "MealMatePrefs";
     private static final String KEY_LOGGED_IN_USER = "loggedInUser";
+    private static final String KEY_LOGGED_IN_USER_ID = "loggedInUserId";
 
     @Override
     public void onBackPressed() {
@@ -75,21 +76,27 @@ public class LoginActivity extends AppCompatActivity {
                 return;
             }
 
-            boolean success = userRepository.login(username, password);
-            if (success) {
-                // Save login session
-                SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-                prefs.edit().putString(KEY_LOGGED_IN_USER, username).apply();
-
-                Toast.makeText(this, "Login Successful", Toast.LENGTH_SHORT).show();
-
-                Intent intent = new Intent(LoginActivity.this, RecipeListActivity.class);
-                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                startActivity(intent);
-                finish();
-            } else {
-                Toast.makeText(this, "Invalid username or password", Toast.LENGTH_SHORT).show();
-            }
+            binding.btnLogin.setEnabled(false);
+            userRepository.login(username, password, userId -> {
+                binding.btnLogin.setEnabled(true);
+                if (userId != null) {
+                    // Save login session
+                    SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+                    prefs.edit()
+                            .putString(KEY_LOGGED_IN_USER, username)
+                            .putInt(KEY_LOGGED_IN_USER_ID, userId)
+                            .apply();
+
+                    Toast.makeText(this, "Login Successful", Toast.LENGTH_SHORT).show();
+
+                    Intent intent = new Intent(LoginActivity.this, RecipeListActivity.class);
+                    intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                    startActivity(intent);
+                    finish();
+                } else {
+                    Toast.makeText(this, "Invalid username or password", Toast.LENGTH_SHORT).show();
+                }
+            });
         });
     }
 }
@@ -0,0 +1,147 @@
+package com.buc.mealmate;
+
+import com.buc.mealmate.data.Geohash;
+import com.buc.mealmate.data.PurchaseLocationDao;
+import com.buc.mealmate.data.StoreStock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bounding-box and k-nearest queries over where one account bought things, one row per store and
+ * ingredient at the store's centroid. Both are answered from geohash cell range scans, so only
+ * stores near the query point are read. Purchases still waiting for {@link StoreClusterer} are not
+ * found yet. Call off the main thread.
+ */
+public class NearbyPurchaseFinder {
+
+    private static final double EARTH_RADIUS_M = 6371000.0;
+    static final double METRES_PER_DEGREE = 111320.0;
+
+    // Most cells scanned for one bounding box before falling back to a coarser precision
+    private static final int MAX_BOX_CELLS = 16;
+    // Finest precision tried for nearest queries (~150 m cells)
+    private static final int NEAREST_START_PRECISION = 7;
+
+    private final PurchaseLocationDao dao;
+    private final int userId;
+
+    public NearbyPurchaseFinder(PurchaseLocationDao dao, int userId) {
+        this.dao = dao;
+        this.userId = userId;
+    }
+
+    /**
+     * Stores inside the box, optionally only for one ingredient (case-insensitive).
+     */
+    public List<StoreStock> withinBounds(String ingredient, double minLat, double minLng,
+                                         double maxLat, double maxLng) {
+        int precision = Geohash.MAX_PRECISION;
+        Set<String> cells = coverBox(minLat, minLng, maxLat, maxLng, precision);
+        while (cells.size() > MAX_BOX_CELLS && precision > 1) {
+            cells = coverBox(minLat, minLng, maxLat, maxLng, --precision);
+        }
+
+        List<StoreStock> result = new ArrayList<>();
+        for (StoreStock store : scanCells(ingredient, cells)) {
+            if (store.lat >= minLat && store.lat <= maxLat
+                    && store.lng >= minLng && store.lng <= maxLng) {
+                result.add(store);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The k stores closest to (lat, lng), nearest first, optionally only for one ingredient.
+     */
+    public List<StoreStock> nearest(String ingredient, double lat, double lng, int k) {
+        for (int precision = NEAREST_START_PRECISION; precision >= 1; precision--) {
+            List<StoreStock> candidates = scanCells(ingredient, neighbourhood(lat, lng, precision));
+            sortByDistance(candidates, lat, lng);
+            if (candidates.size() < k) continue;
+
+            // The 3x3 block reaches at least one cell beyond the centre cell in every direction,
+            // so any point closer than that is guaranteed to have been scanned
+            double safeRadius = Math.min(Geohash.cellHeight(precision) * METRES_PER_DEGREE,
+                    Geohash.cellWidth(precision) * METRES_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+            if (distanceMetres(lat, lng, candidates.get(k - 1).lat, candidates.get(k - 1).lng) <= safeRadius) {
+                return new ArrayList<>(candidates.subList(0, k));
+            }
+        }
+
+        // Sparse data or a huge k: nothing finer than the whole table is guaranteed correct
+        List<StoreStock> all = ingredient == null ? dao.getAll(userId) : dao.getAllForIngredient(userId, ingredient);
+        sortByDistance(all, lat, lng);
+        return all.size() > k ? new ArrayList<>(all.subList(0, k)) : all;
+    }
+
+    public static double distanceMetres(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private List<StoreStock> scanCells(String ingredient, Set<String> cells) {
+        List<StoreStock> result = new ArrayList<>();
+        for (String cell : cells) {
+            String end = Geohash.rangeEnd(cell);
+            result.addAll(ingredient == null
+                    ? dao.getInCell(userId, cell, end)
+                    : dao.getIngredientInCell(userId, ingredient, cell, end));
+        }
+        return result;
+    }
+
+    // The cell containing the point and its eight neighbours
+    static Set<String> neighbourhood(double lat, double lng, int precision) {
+        double h = Geohash.cellHeight(precision);
+        double w = Geohash.cellWidth(precision);
+        Set<String> cells = new LinkedHashSet<>();
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                cells.add(Geohash.encode(clampLat(lat + dy * h), wrapLng(lng + dx * w), precision));
+            }
+        }
+        return cells;
+    }
+
+    private static Set<String> coverBox(double minLat, double minLng, double maxLat, double maxLng,
+                                        int precision) {
+        double h = Geohash.cellHeight(precision);
+        double w = Geohash.cellWidth(precision);
+        Set<String> cells = new LinkedHashSet<>();
+        for (double lat = minLat; ; lat += h) {
+            double rowLat = Math.min(lat, maxLat);
+            for (double lng = minLng; ; lng += w) {
+                cells.add(Geohash.encode(rowLat, Math.min(lng, maxLng), precision));
+                if (cells.size() > MAX_BOX_CELLS && precision > 1) return cells;
+                if (lng >= maxLng) break;
+            }
+            if (lat >= maxLat) break;
+        }
+        return cells;
+    }
+
+    private static void sortByDistance(List<StoreStock> stores, double lat, double lng) {
+        Collections.sort(stores, Comparator.comparingDouble(
+                store -> distanceMetres(lat, lng, store.lat, store.lng)));
+    }
+
+    private static double clampLat(double lat) {
+        return Math.max(-90, Math.min(90, lat));
+    }
+
+    private static double wrapLng(double lng) {
+        if (lng < -180) return lng + 360;
+        if (lng >= 180) return lng - 360;
+        return lng;
+    }
+}
@@ -0,0 +1,297 @@
+package com.buc.mealmate;
+
+import android.database.Cursor;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.buc.mealmate.data.AppDatabase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory "what can I cook now" index for one account. Ingredient names are interned to
+ * vocabulary ids; each recipe keeps its requirement as a sparse bitset (only its non-zero
+ * 64-bit words) and the pantry, everything ticked as purchased in any recipe, is a dense one.
+ * Scoring a recipe is a handful of AND + bitCount operations.
+ *
+ * Built lazily from the database, then kept current by the repository's writes, which call
+ * in from inside their own transactions. Bulk writes it can't follow, and writes that roll
+ * back after calling in, call {@link #invalidate}.
+ */
+public class PantryIndex {
+
+    public static class Match {
+        public final int recipeId;
+        public final String name;
+        public final int onHand;
+        public final int required;
+
+        Match(int recipeId, String name, int onHand, int required) {
+            this.recipeId = recipeId;
+            this.name = name;
+            this.onHand = onHand;
+            this.required = required;
+        }
+    }
+
+    private static PantryIndex instance;
+
+    private final AppDatabase db;
+    private final int userId;
+
+    // Everything below is guarded by this
+    private boolean built;
+    private final Map<String, Integer> vocabulary = new HashMap<>();
+    // Purchased rows per vocabulary id, so unticking in one recipe keeps it on hand if another has it
+    private int[] pantryCounts = new int[64];
+    private long[] pantry = new long[1];
+
+    private int size;
+    private int[] recipeIds = new int[16];
+    private String[] names = new String[16];
+    private int[] required = new int[16];
+    private int[][] wordIndexes = new int[16][];
+    private long[][] words = new long[16][];
+    private final Map<Integer, Integer> slots = new HashMap<>();
+
+    private PantryIndex(AppDatabase db, int userId) {
+        this.db = db;
+        this.userId = userId;
+    }
+
+    static synchronized PantryIndex forUser(AppDatabase db, int userId) {
+        if (instance == null || instance.userId != userId) instance = new PantryIndex(db, userId);
+        return instance;
+    }
+
+    // Built and empty, with no database behind it: filled only through the write hooks
+    @VisibleForTesting
+    static PantryIndex detached() {
+        PantryIndex index = new PantryIndex(null, -1);
+        index.built = true;
+        return index;
+    }
+
+    /** Drops the built index; the next ranking rebuilds it from the database. */
+    static void invalidate() {
+        PantryIndex current;
+        synchronized (PantryIndex.class) {
+            current = instance;
+        }
+        if (current == null) return;
+        synchronized (current) {
+            current.built = false;
+        }
+    }
+
+    /**
+     * Recipes ordered by fewest missing ingredients, then most on hand; recipes without
+     * ingredients come last. Call off the main thread.
+     */
+    public List<Match> rank(int limit) {
+        ensureBuilt();
+        synchronized (this) {
+            long[] keys = new long[size];
+            int[] onHand = new int[size];
+            for (int slot = 0; slot < size; slot++) {
+                int have = 0;
+                int[] indexes = wordIndexes[slot];
+                long[] bits = words[slot];
+                for (int k = 0; k < indexes.length; k++) {
+                    int i = indexes[k];
+                    if (i < pantry.length) have += Long.bitCount(bits[k] & pantry[i]);
+                }
+                onHand[slot] = have;
+                // 15 bits, so the key stays positive
+                int missing = required[slot] == 0 ? 0x7FFF : Math.min(required[slot] - have, 0x7FFE);
+                // missing, then (inverted) on-hand, then slot: one primitive sort orders everything
+                keys[slot] = ((long) missing << 48) | ((long) (0xFFFF - Math.min(have, 0xFFFF)) << 32) | slot;
+            }
+            long[] top = smallest(keys, Math.min(limit, size));
+
+            List<Match> matches = new ArrayList<>(top.length);
+            for (long key : top) {
+                int slot = (int) key;
+                matches.add(new Match(recipeIds[slot], names[slot], onHand[slot], required[slot]));
+            }
+            return matches;
+        }
+    }
+
+    // The k smallest keys in ascending order, through a bounded max-heap: O(n log k) instead of sorting all n
+    private static long[] smallest(long[] keys, int k) {
+        if (k == 0) return new long[0];
+        long[] heap = new long[k];
+        int filled = 0;
+        for (long key : keys) {
+            if (filled < k) {
+                int i = filled++;
+                while (i > 0 && heap[(i - 1) / 2] < key) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = key;
+            } else if (key < heap[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= k) break;
+                    if (child + 1 < k && heap[child + 1] > heap[child]) child++;
+                    if (heap[child] <= key) break;
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = key;
+            }
+        }
+        Arrays.sort(heap);
+        return heap;
+    }
+
+    synchronized void addRecipe(int recipeId, String name, List<String> ingredients) {
+        if (!built || slots.containsKey(recipeId)) return;
+        int[] ids = new int[ingredients.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = intern(ingredients.get(i));
+        addSlot(recipeId, name, ids, ids.length);
+    }
+
+    /** purchasedNames: names of the removed recipes' purchased rows, which leave the pantry. */
+    synchronized void removeRecipes(List<Integer> ids, List<String> purchasedNames) {
+        if (!built) return;
+        for (int recipeId : ids) {
+            Integer slot = slots.remove(recipeId);
+            if (slot == null) continue;
+            // Swap the last recipe into the hole
+            int last = --size;
+            if (slot != last) {
+                recipeIds[slot] = recipeIds[last];
+                names[slot] = names[last];
+                required[slot] = required[last];
+                wordIndexes[slot] = wordIndexes[last];
+                words[slot] = words[last];
+                slots.put(recipeIds[slot], slot);
+            }
+            names[last] = null;
+            wordIndexes[last] = null;
+            words[last] = null;
+        }
+        adjustPantry(purchasedNames, -1);
+    }
+
+    /** delta +1 for rows that just became purchased, -1 for rows that stopped being purchased. */
+    synchronized void adjustPantry(List<String> ingredients, int delta) {
+        if (!built) return;
+        for (String ingredient : ingredients) {
+            int id = intern(ingredient);
+            if (id < 0) continue;
+            int count = Math.max(0, pantryCounts[id] + delta);
+            pantryCounts[id] = count;
+            if (count > 0) pantry[id >>> 6] |= 1L << id;
+            else pantry[id >>> 6] &= ~(1L << id);
+        }
+    }
+
+    private void ensureBuilt() {
+        synchronized (this) {
+            if (built) return;
+        }
+        // Inside a transaction, so no write lands between the read and the index going live
+        db.runInTransaction(this::rebuild);
+    }
+
+    private synchronized void rebuild() {
+        if (built) return;
+        vocabulary.clear();
+        pantryCounts = new int[64];
+        pantry = new long[1];
+        slots.clear();
+        Arrays.fill(names, null);
+        Arrays.fill(wordIndexes, null);
+        Arrays.fill(words, null);
+        size = 0;
+
+        int[] ids = new int[16];
+        int count = 0;
+        int currentRecipe = -1;
+        String currentName = null;
+        try (Cursor cursor = db.recipeDao().getPantryRowsCursor(userId)) {
+            while (cursor.moveToNext()) {
+                int recipeId = cursor.getInt(0);
+                if (recipeId != currentRecipe) {
+                    if (currentRecipe != -1) addSlot(currentRecipe, currentName, ids, count);
+                    currentRecipe = recipeId;
+                    currentName = cursor.getString(1);
+                    count = 0;
+                }
+                if (cursor.isNull(2)) continue;
+                int id = intern(cursor.getString(2));
+                if (id < 0) continue;
+                if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+                ids[count++] = id;
+                if (cursor.getInt(3) != 0) {
+                    pantryCounts[id]++;
+                    pantry[id >>> 6] |= 1L << id;
+                }
+            }
+            if (currentRecipe != -1) addSlot(currentRecipe, currentName, ids, count);
+        }
+        built = true;
+    }
+
+    // Packs the vocabulary ids into the recipe's non-zero words, ascending by word index
+    private void addSlot(int recipeId, String name, int[] ids, int count) {
+        int[] sorted = Arrays.copyOf(ids, count);
+        Arrays.sort(sorted);
+        int wordCount = 0;
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (sorted[i] < 0) continue;
+            if (i == 0 || sorted[i] != sorted[i - 1]) distinct++;
+            if (i == 0 || (sorted[i] >>> 6) != (sorted[i - 1] >>> 6)) wordCount++;
+        }
+        int[] indexes = new int[wordCount];
+        long[] bits = new long[wordCount];
+        int w = -1;
+        for (int i = 0; i < count; i++) {
+            if (sorted[i] < 0) continue;
+            int word = sorted[i] >>> 6;
+            if (w < 0 || indexes[w] != word) indexes[++w] = word;
+            bits[w] |= 1L << sorted[i];
+        }
+
+        if (size == recipeIds.length) {
+            int capacity = size * 2;
+            recipeIds = Arrays.copyOf(recipeIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            required = Arrays.copyOf(required, capacity);
+            wordIndexes = Arrays.copyOf(wordIndexes, capacity);
+            words = Arrays.copyOf(words, capacity);
+        }
+        recipeIds[size] = recipeId;
+        names[size] = name;
+        required[size] = distinct;
+        wordIndexes[size] = indexes;
+        words[size] = bits;
+        slots.put(recipeId, size);
+        size++;
+    }
+
+    // Same key as the shopping list: trimmed and case-insensitive. -1 for a blank name.
+    private int intern(String ingredient) {
+        if (ingredient == null) return -1;
+        String key = ingredient.trim().toLowerCase(Locale.ROOT);
+        if (key.isEmpty()) return -1;
+        Integer id = vocabulary.get(key);
+        if (id != null) return id;
+        int next = vocabulary.size();
+        vocabulary.put(key, next);
+        if (next == pantryCounts.length) pantryCounts = Arrays.copyOf(pantryCounts, next * 2);
+        if ((next >>> 6) == pantry.length) pantry = Arrays.copyOf(pantry, pantry.length * 2);
+        return next;
+    }
+}
@@ -0,0 +1,85 @@
+package com.buc.mealmate;
+
+import android.os.Build;
+import android.util.Base64;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password hashes, stored as "algorithm$iterations$salt$hash". The iteration
+ * count is kept in each hash, so ITERATIONS can be raised later: older hashes still
+ * verify, and {@link #needsRehash} reports them so they can be upgraded at next login.
+ */
+public final class PasswordHasher {
+
+    // Cost parameter; raise it as devices get faster, stored hashes upgrade on next login
+    public static final int ITERATIONS = 120_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final String SHA256 = "pbkdf2_sha256";
+    private static final String SHA1 = "pbkdf2_sha1"; // PBKDF2WithHmacSHA256 needs API 26
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private PasswordHasher() {
+    }
+
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        String algorithm = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O ? SHA256 : SHA1;
+        byte[] hash = pbkdf2(algorithm, password, salt, ITERATIONS);
+        return algorithm + "$" + ITERATIONS + "$" + encode(salt) + "$" + encode(hash);
+    }
+
+    public static boolean verify(String password, String stored) {
+        if (stored == null) return false;
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.decode(parts[2], Base64.NO_WRAP);
+            byte[] expected = Base64.decode(parts[3], Base64.NO_WRAP);
+            byte[] actual = pbkdf2(parts[0], password, salt, iterations);
+            return MessageDigest.isEqual(expected, actual); // Constant time
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static boolean needsRehash(String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return true;
+        if (parts[0].equals(SHA1) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) return true;
+        try {
+            return Integer.parseInt(parts[1]) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String algorithm, String password, byte[] salt, int iterations) {
+        String jcaName;
+        if (SHA256.equals(algorithm)) jcaName = "PBKDF2WithHmacSHA256";
+        else if (SHA1.equals(algorithm)) jcaName = "PBKDF2WithHmacSHA1";
+        else throw new IllegalArgumentException("Unknown hash algorithm " + algorithm);
+
+        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(jcaName).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(jcaName + " unavailable", e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.encodeToString(bytes, Base64.NO_WRAP);
+    }
+}
@@ -20,6 +20,7 @@ public class ProfileActivity extends AppCompatActivity {
 
     private static final String PREFS_NAME = "MealMatePrefs";
     private static final String KEY_LOGGED_IN_USER = "loggedInUser";
+    private static final String KEY_LOGGED_IN_USER_ID = "loggedInUserId";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -60,7 +61,7 @@ public class ProfileActivity extends AppCompatActivity {
 
         btnLogout.setOnClickListener(v -> {
             // Clear the login session
-            prefs.edit().remove(KEY_LOGGED_IN_USER).apply();
+            prefs.edit().remove(KEY_LOGGED_IN_USER).remove(KEY_LOGGED_IN_USER_ID).apply();
 
             // Return to MainActivity (Login/Register screen) and clear back stack
             Intent intent = new Intent(this, MainActivityPage.class);
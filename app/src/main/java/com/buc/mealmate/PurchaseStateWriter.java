@@ -0,0 +1,171 @@
+package com.buc.mealmate;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.buc.mealmate.data.PurchaseLocation;
+import com.buc.mealmate.data.RecipeIngredient;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Write-behind queue for the purchase state of one recipe. Toggles are coalesced per
+ * ingredient row and per location, then written in one transaction once the user pauses
+ * for {@link #DEBOUNCE_MS}, or straight away on {@link #flush}.
+ *
+ * Main thread only. At most one flush is in flight, so writes land in the order they were made.
+ * A failed write puts its changes back in the queue, behind anything toggled since, and they go
+ * out with the next flush.
+ */
+class PurchaseStateWriter {
+
+    static final long DEBOUNCE_MS = 500;
+
+    /** Where flushes go; {@link RecipeRepository#applyPurchaseChanges} outside of tests. */
+    interface Sink {
+        void apply(int recipeId, List<Integer> purchasedIds, List<Integer> unpurchasedIds,
+                   List<PurchaseLocation> upserts, List<String> removedLocations,
+                   Runnable onDone, RecipeRepository.Callback<RuntimeException> onError);
+    }
+
+    private final Sink sink;
+    private final int recipeId;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable debouncedFlush = this::flush;
+
+    // Dirty sets, latest state per key: a later toggle overwrites an earlier unwritten one.
+    // Ingredients are row id -> purchased, locations are keyed on the lower-cased ingredient
+    private Map<Integer, Boolean> changedIngredients = new LinkedHashMap<>();
+    private Map<String, PurchaseLocation> locationUpserts = new LinkedHashMap<>();
+    private Map<String, String> locationRemovals = new LinkedHashMap<>();
+
+    private boolean flushing;
+    private final List<Runnable> idleCallbacks = new ArrayList<>();
+    private Runnable onFlushed;
+    private RecipeRepository.Callback<RuntimeException> onFlushFailed;
+
+    PurchaseStateWriter(RecipeRepository repository, int recipeId) {
+        this(repository::applyPurchaseChanges, recipeId);
+    }
+
+    PurchaseStateWriter(Sink sink, int recipeId) {
+        this.sink = sink;
+        this.recipeId = recipeId;
+    }
+
+    /** Runs on the main thread after each write lands. */
+    void setOnFlushed(Runnable listener) {
+        onFlushed = listener;
+    }
+
+    /** Runs on the main thread when a write fails; its changes are queued again by then. */
+    void setOnFlushFailed(RecipeRepository.Callback<RuntimeException> listener) {
+        onFlushFailed = listener;
+    }
+
+    void setPurchased(RecipeIngredient row) {
+        changedIngredients.put(row.id, row.purchased);
+        scheduleFlush();
+    }
+
+    void putLocation(PurchaseLocation location) {
+        String key = key(location.ingredient);
+        locationRemovals.remove(key);
+        locationUpserts.put(key, location);
+        scheduleFlush();
+    }
+
+    void removeLocation(String ingredient) {
+        String key = key(ingredient);
+        locationUpserts.remove(key);
+        locationRemovals.put(key, ingredient);
+        scheduleFlush();
+    }
+
+    boolean hasPendingChanges() {
+        return !changedIngredients.isEmpty() || !locationUpserts.isEmpty() || !locationRemovals.isEmpty();
+    }
+
+    /** Writes whatever is queued now instead of waiting out the debounce. */
+    void flush() {
+        mainHandler.removeCallbacks(debouncedFlush);
+        if (flushing) return; // picked up when the current write finishes
+        if (!hasPendingChanges()) {
+            runIdleCallbacks();
+            return;
+        }
+
+        Map<Integer, Boolean> ingredients = changedIngredients;
+        Map<String, PurchaseLocation> upserts = locationUpserts;
+        Map<String, String> removals = locationRemovals;
+        changedIngredients = new LinkedHashMap<>();
+        locationUpserts = new LinkedHashMap<>();
+        locationRemovals = new LinkedHashMap<>();
+
+        List<Integer> purchasedIds = new ArrayList<>();
+        List<Integer> unpurchasedIds = new ArrayList<>();
+        for (Map.Entry<Integer, Boolean> change : ingredients.entrySet()) {
+            (change.getValue() ? purchasedIds : unpurchasedIds).add(change.getKey());
+        }
+
+        flushing = true;
+        sink.apply(recipeId, purchasedIds, unpurchasedIds, new ArrayList<>(upserts.values()),
+                new ArrayList<>(removals.values()), () -> {
+                    flushing = false;
+                    if (onFlushed != null) onFlushed.run();
+                    flush();
+                }, error -> {
+                    flushing = false;
+                    requeue(ingredients, upserts, removals);
+                    // Whoever waited for the save has to try again; the changes wait for the next flush
+                    idleCallbacks.clear();
+                    if (onFlushFailed != null) onFlushFailed.onResult(error);
+                });
+    }
+
+    /** Flushes, then runs onIdle once everything queued so far is on disk. */
+    void flush(Runnable onIdle) {
+        idleCallbacks.add(onIdle);
+        flush();
+    }
+
+    // Puts a failed write's changes back; anything toggled since for the same key is newer and stays
+    private void requeue(Map<Integer, Boolean> ingredients, Map<String, PurchaseLocation> upserts,
+                         Map<String, String> removals) {
+        for (Map.Entry<Integer, Boolean> change : ingredients.entrySet()) {
+            if (!changedIngredients.containsKey(change.getKey())) {
+                changedIngredients.put(change.getKey(), change.getValue());
+            }
+        }
+        for (Map.Entry<String, PurchaseLocation> upsert : upserts.entrySet()) {
+            if (!locationUpserts.containsKey(upsert.getKey()) && !locationRemovals.containsKey(upsert.getKey())) {
+                locationUpserts.put(upsert.getKey(), upsert.getValue());
+            }
+        }
+        for (Map.Entry<String, String> removal : removals.entrySet()) {
+            if (!locationUpserts.containsKey(removal.getKey()) && !locationRemovals.containsKey(removal.getKey())) {
+                locationRemovals.put(removal.getKey(), removal.getValue());
+            }
+        }
+    }
+
+    private void scheduleFlush() {
+        mainHandler.removeCallbacks(debouncedFlush);
+        mainHandler.postDelayed(debouncedFlush, DEBOUNCE_MS);
+    }
+
+    private void runIdleCallbacks() {
+        if (idleCallbacks.isEmpty()) return;
+        List<Runnable> callbacks = new ArrayList<>(idleCallbacks);
+        idleCallbacks.clear();
+        for (Runnable callback : callbacks) callback.run();
+    }
+
+    private static String key(String ingredient) {
+        return ingredient == null ? "" : ingredient.toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,6 +2,7 @@ package com.buc.mealmate;
 
 import android.content.Context;
 import android.content.Intent;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,99 +12,167 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.buc.mealmate.data.Recipe;
+import com.buc.mealmate.data.RecipeListItem;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
-public class RecipeAdapter extends RecyclerView.Adapter<RecipeAdapter.ViewHolder> {
+public class RecipeAdapter extends PagingDataAdapter<RecipeListItem, RecipeAdapter.ViewHolder> {
 
     private final Context context;
-    private List<Recipe> recipes;
     private final OnRecipeDeleteListener deleteListener;
 
-    private final Set<Integer> selectedPositions = new HashSet<>();
+    // Keyed by recipe id, so a selection stays on its recipe as rows move or pages drop
+    private final IntSet selectedIds = new IntSet();
     private boolean selectionMode = false;
 
     public interface OnRecipeDeleteListener {
-        void onDeleteClicked(Recipe recipe);
+        void onDeleteClicked(RecipeListItem recipe);
     }
 
-    public RecipeAdapter(Context context, List<Recipe> recipes, OnRecipeDeleteListener deleteListener) {
+    // Partial-bind payloads so a status change or selection toggle doesn't rebind the whole row
+    private static final Object PAYLOAD_STATUS = new Object();
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    // Items are keyed on the recipe id; the diff runs on a background thread inside the paging differ.
+    // PagingDataAdapter doesn't support setHasStableIds, the id-keyed diff gives the same row identity.
+    private static final DiffUtil.ItemCallback<RecipeListItem> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<RecipeListItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull RecipeListItem oldItem,
+                                       @NonNull RecipeListItem newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull RecipeListItem oldItem,
+                                          @NonNull RecipeListItem newItem) {
+            return TextUtils.equals(oldItem.name, newItem.name)
+                    && oldItem.ready == newItem.ready;
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull RecipeListItem oldItem,
+                                       @NonNull RecipeListItem newItem) {
+            // Only the status changed: rebind just that label
+            if (TextUtils.equals(oldItem.name, newItem.name)) return PAYLOAD_STATUS;
+            return null;
+        }
+    };
+
+    public RecipeAdapter(Context context, OnRecipeDeleteListener deleteListener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.recipes = recipes != null ? recipes : new ArrayList<>();
         this.deleteListener = deleteListener;
     }
 
-    public void setRecipes(List<Recipe> recipes) {
-        this.recipes = recipes != null ? recipes : new ArrayList<>();
-        clearSelection();
-        notifyDataSetChanged();
-    }
-
     public void setSelectionMode(boolean enabled) {
+        if (selectionMode == enabled) return;
         this.selectionMode = enabled;
-        if (!enabled) clearSelection();
-        notifyDataSetChanged();
+        if (!enabled) selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
     }
 
     public void clearSelection() {
-        selectedPositions.clear();
-        notifyDataSetChanged();
+        if (selectedIds.isEmpty()) return;
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
     }
 
-    public List<Recipe> getSelectedRecipes() {
-        List<Recipe> selected = new ArrayList<>();
-        for (Integer pos : selectedPositions) {
-            if (pos >= 0 && pos < recipes.size()) selected.add(recipes.get(pos));
-        }
-        return selected;
+    // Adds ids whether or not their rows are loaded yet
+    public void selectAll(int[] recipeIds) {
+        selectedIds.addAll(recipeIds);
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+    }
+
+    public int getSelectedCount() {
+        return selectedIds.size();
+    }
+
+    public int[] getSelectedIds() {
+        return selectedIds.toArray();
     }
 
     @NonNull
     @Override
     public RecipeAdapter.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_recipe, parent, false);
-        return new ViewHolder(view);
-    }
+        ViewHolder holder = new ViewHolder(view);
 
-    @Override
-    public void onBindViewHolder(@NonNull RecipeAdapter.ViewHolder holder, int position) {
-        Recipe recipe = recipes.get(position);
-        holder.tvName.setText(recipe.name);
-        holder.tvStatus.setText(recipe.isReadyToCook() ? "Ready" : "Not Ready");
-
-        holder.checkBox.setOnCheckedChangeListener(null); // clear listener to avoid recycling issues
-        holder.checkBox.setVisibility(selectionMode ? View.VISIBLE : View.GONE);
-        holder.checkBox.setChecked(selectedPositions.contains(position));
+        // Listeners resolve the row at click time, so they survive diffs without a rebind
         holder.checkBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            if (isChecked) selectedPositions.add(position);
-            else selectedPositions.remove(position);
+            if (holder.bindingSelection) return;
+            RecipeListItem item = recipeAt(holder);
+            if (item == null) return;
+            if (isChecked) selectedIds.add(item.id);
+            else selectedIds.remove(item.id);
         });
 
         holder.card.setOnClickListener(v -> {
             if (selectionMode) {
                 holder.checkBox.setChecked(!holder.checkBox.isChecked());
-            } else {
-                Intent intent = new Intent(context, RecipeDetailActivity.class);
-                intent.putExtra("recipe_id", recipe.id);
-                context.startActivity(intent);
+                return;
             }
+            RecipeListItem item = recipeAt(holder);
+            if (item == null) return;
+            Intent intent = new Intent(context, RecipeDetailActivity.class);
+            intent.putExtra("recipe_id", item.id);
+            context.startActivity(intent);
         });
 
-        holder.btnDelete.setVisibility(selectionMode ? View.GONE : View.VISIBLE);
         holder.btnDelete.setOnClickListener(v -> {
-            if (deleteListener != null) deleteListener.onDeleteClicked(recipe);
+            RecipeListItem item = recipeAt(holder);
+            if (item != null && deleteListener != null) deleteListener.onDeleteClicked(item);
         });
+        return holder;
     }
 
     @Override
-    public int getItemCount() {
-        return recipes.size();
+    public void onBindViewHolder(@NonNull RecipeAdapter.ViewHolder holder, int position) {
+        RecipeListItem item = getItem(position);
+        if (item == null) return; // placeholder, not loaded yet
+
+        holder.tvName.setText(item.name);
+        bindStatus(holder, item);
+        bindSelection(holder, item);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecipeAdapter.ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        RecipeListItem item = getItem(position);
+        if (item == null) return;
+
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_STATUS) bindStatus(holder, item);
+            else if (payload == PAYLOAD_SELECTION) bindSelection(holder, item);
+        }
+    }
+
+    private void bindStatus(ViewHolder holder, RecipeListItem item) {
+        holder.tvStatus.setText(item.ready ? "Ready" : "Not Ready");
+    }
+
+    private void bindSelection(ViewHolder holder, RecipeListItem item) {
+        holder.checkBox.setVisibility(selectionMode ? View.VISIBLE : View.GONE);
+        holder.btnDelete.setVisibility(selectionMode ? View.GONE : View.VISIBLE);
+
+        // Setting the state from the model must not feed back into the selection set
+        holder.bindingSelection = true;
+        holder.checkBox.setChecked(selectedIds.contains(item.id));
+        holder.bindingSelection = false;
+    }
+
+    private RecipeListItem recipeAt(ViewHolder holder) {
+        int pos = holder.getBindingAdapterPosition();
+        return pos == RecyclerView.NO_POSITION ? null : peek(pos);
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
@@ -111,6 +180,7 @@ public class RecipeAdapter extends RecyclerView.Adapter<RecipeAdapter.ViewHolder
         TextView tvName, tvStatus;
         ImageButton btnDelete;
         CheckBox checkBox;
+        boolean bindingSelection;
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
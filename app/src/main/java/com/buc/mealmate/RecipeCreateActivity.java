@@ -11,16 +11,18 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.buc.mealmate.data.AppDatabase;
 import com.buc.mealmate.data.Recipe;
 import com.buc.mealmate.databinding.ActivityRecipeCreateBinding;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class RecipeCreateActivity extends AppCompatActivity {
 
     private ActivityRecipeCreateBinding binding;
-    private AppDatabase db;
+    private RecipeRepository recipeRepository;
 
 
     @Override
@@ -30,7 +32,7 @@ public class RecipeCreateActivity extends AppCompatActivity {
         binding = ActivityRecipeCreateBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        db = AppDatabase.getInstance(this);
+        recipeRepository = new RecipeRepository(this);
 
         setupSystemBars();
 
@@ -115,21 +117,17 @@ public class RecipeCreateActivity extends AppCompatActivity {
             return;
         }
 
-        StringBuilder ingredientsJoined = new StringBuilder();
+        List<String> ingredientNames = new ArrayList<>();
         for (int i = 0; i < chipCount; i++) {
             Chip chip = (Chip) chipGroup.getChildAt(i);
-            ingredientsJoined.append(chip.getText());
-            if (i < chipCount - 1) ingredientsJoined.append(",");
+            ingredientNames.add(chip.getText().toString());
         }
 
-        Recipe recipe = new Recipe(name, ingredientsJoined.toString(), instructions);
+        Recipe recipe = new Recipe(name, instructions);
 
-        new Thread(() -> {
-            db.recipeDao().insert(recipe);
-            runOnUiThread(() -> {
-                Toast.makeText(this, "Recipe saved", Toast.LENGTH_SHORT).show();
-                finish();
-            });
-        }).start();
+        recipeRepository.insert(recipe, ingredientNames, () -> {
+            Toast.makeText(this, "Recipe saved", Toast.LENGTH_SHORT).show();
+            finish();
+        });
     }
 }
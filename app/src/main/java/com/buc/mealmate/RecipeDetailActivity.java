@@ -11,38 +11,49 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.PurchaseLocation;
 import com.buc.mealmate.data.Recipe;
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
+import com.buc.mealmate.data.RecipeIngredient;
+import com.buc.mealmate.data.RecipeWithIngredients;
+import com.buc.mealmate.data.StoreStock;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class RecipeDetailActivity extends AppCompatActivity {
 
     private static final int LOCATION_PERMISSION_REQUEST = 1001;
+    private static final int NEARBY_PURCHASE_LIMIT = 5;
 
     private MaterialToolbar topAppBar;
     private RecyclerView rvIngredients;
     private Recipe recipe;
-    private AppDatabase db;
+    private List<RecipeIngredient> ingredients;
+    private RecipeRepository recipeRepository;
     private IngredientsAdapter ingredientsAdapter;
     private MaterialButton btnSave;
 
-    private FusedLocationProviderClient fusedLocationClient;
+    // Every toggle is queued here and autosaved; btnSave only flushes and leaves
+    private PurchaseStateWriter purchaseWriter;
 
-    // Map to hold saved ingredient purchase locations (loaded from recipe)
-    private Map<String, Recipe.LatLng> savedLocations;
+    private LocationFixProvider locationFixProvider;
+
+    // Saved ingredient purchase locations (loaded with the recipe)
+    private List<PurchaseLocation> savedLocations;
+
+    // Lower-cased ingredient -> store it was bought at, for points already clustered
+    private Map<String, String> storeNames = new HashMap<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,8 +64,8 @@ public class RecipeDetailActivity extends AppCompatActivity {
         rvIngredients = findViewById(R.id.rvIngredients);
         btnSave = findViewById(R.id.btnSave);
 
-        db = AppDatabase.getInstance(this);
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+        recipeRepository = new RecipeRepository(this);
+        locationFixProvider = FusedLocationFixProvider.get(this);
 
         int recipeId = getIntent().getIntExtra("recipe_id", -1);
         if (recipeId == -1) {
@@ -63,64 +74,61 @@ public class RecipeDetailActivity extends AppCompatActivity {
             return;
         }
 
-        recipe = db.recipeDao().getById(recipeId);
-        if (recipe == null) {
-            Toast.makeText(this, "Recipe not found", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
+        recipeRepository.getWithIngredients(recipeId, loaded -> {
+            if (loaded == null) {
+                Toast.makeText(this, "Recipe not found", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
+            recipe = loaded.recipe;
+            ingredients = loaded.ingredients;
+            savedLocations = loaded.locations;
+            bindRecipe();
+        });
+    }
+
+    private void bindRecipe() {
+        purchaseWriter = new PurchaseStateWriter(recipeRepository, recipe.id);
+        // A flush with new points also places them in stores
+        purchaseWriter.setOnFlushed(this::loadStoreNames);
+        purchaseWriter.setOnFlushFailed(error ->
+                Toast.makeText(this, "Couldn't save purchases, try again", Toast.LENGTH_SHORT).show());
 
         topAppBar.setTitle(recipe.name);
         topAppBar.setNavigationOnClickListener(v -> onBackPressed());
 
-        savedLocations = recipe.getPurchasedIngredientLocations();
-
         rvIngredients.setLayoutManager(new LinearLayoutManager(this));
-        ingredientsAdapter = new IngredientsAdapter(parseIngredients(), parsePurchasedIngredients(), savedLocations);
+        ingredientsAdapter = new IngredientsAdapter(ingredients, savedLocations);
         rvIngredients.setAdapter(ingredientsAdapter);
 
         findViewById(R.id.tvInstructions).setVisibility(View.VISIBLE);
         ((TextView) findViewById(R.id.tvInstructions)).setText(recipe.instructions);
 
+        loadStoreNames();
+
         btnSave.setOnClickListener(v -> {
-            updatePurchasedIngredients();
-
-            // Save purchase locations map to recipe entity
-            recipe.setPurchasedIngredientLocations(ingredientsAdapter.getPurchaseLocationsAsLatLngMap());
-
-            new Thread(() -> {
-                db.recipeDao().update(recipe);
-                runOnUiThread(() -> {
-                    Toast.makeText(this, recipe.isReadyToCook() ?
-                            "All ingredients purchased! Ready to cook." :
-                            "Progress saved.", Toast.LENGTH_SHORT).show();
-                    finish();
-                });
-            }).start();
+            List<PurchaseLocation> locations = ingredientsAdapter.getPurchaseLocations();
+            purchaseWriter.flush(() -> {
+                Toast.makeText(this, new RecipeWithIngredients(recipe, ingredients, locations).isReadyToCook() ?
+                        "All ingredients purchased! Ready to cook." :
+                        "Progress saved.", Toast.LENGTH_SHORT).show();
+                finish();
+            });
         });
     }
 
-    private List<String> parseIngredients() {
-        if (recipe.ingredients == null || recipe.ingredients.trim().isEmpty())
-            return new ArrayList<>();
-        String[] split = recipe.ingredients.split(",");
-        List<String> list = new ArrayList<>();
-        for (String s : split) list.add(s.trim());
-        return list;
-    }
-
-    private List<String> parsePurchasedIngredients() {
-        if (recipe.purchasedIngredients == null || recipe.purchasedIngredients.trim().isEmpty())
-            return new ArrayList<>();
-        String[] split = recipe.purchasedIngredients.split(",");
-        List<String> list = new ArrayList<>();
-        for (String s : split) list.add(s.trim());
-        return list;
+    private void loadStoreNames() {
+        recipeRepository.getStoreNames(recipe.id, names -> {
+            storeNames = names;
+            ingredientsAdapter.notifyDataSetChanged();
+        });
     }
 
-    private void updatePurchasedIngredients() {
-        List<String> purchasedNow = ingredientsAdapter.getPurchasedIngredients();
-        recipe.purchasedIngredients = String.join(",", purchasedNow);
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Don't leave queued toggles waiting on the debounce when the screen goes away
+        if (purchaseWriter != null) purchaseWriter.flush();
     }
 
     @Override
@@ -132,37 +140,95 @@ public class RecipeDetailActivity extends AppCompatActivity {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
                 ingredientsAdapter.retryPendingLocationFetch();
             } else {
+                ingredientsAdapter.dropPendingLocationFetch();
                 Toast.makeText(this, "Location permission denied", Toast.LENGTH_SHORT).show();
             }
         }
     }
 
+    // Where near here has this ingredient been bought before, in any recipe
+    private void showNearbyPurchases(String ingredient, PurchaseLocation fallbackOrigin) {
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            if (fallbackOrigin != null) {
+                queryNearbyPurchases(ingredient, fallbackOrigin.lat, fallbackOrigin.lng);
+            } else {
+                Toast.makeText(this, "Location permission needed to find nearby purchases", Toast.LENGTH_SHORT).show();
+            }
+            return;
+        }
+        locationFixProvider.getFix(location -> {
+            if (isFinishing()) return;
+            if (location != null) {
+                queryNearbyPurchases(ingredient, location.getLatitude(), location.getLongitude());
+            } else if (fallbackOrigin != null) {
+                queryNearbyPurchases(ingredient, fallbackOrigin.lat, fallbackOrigin.lng);
+            } else {
+                Toast.makeText(this, "Unable to fetch current location", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void queryNearbyPurchases(String ingredient, double lat, double lng) {
+        recipeRepository.findNearbyPurchases(ingredient, lat, lng, NEARBY_PURCHASE_LIMIT, nearby -> {
+            if (isFinishing()) return;
+            if (nearby.isEmpty()) {
+                Toast.makeText(this, "No saved purchases of " + ingredient + " yet", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            String[] rows = new String[nearby.size()];
+            for (int i = 0; i < nearby.size(); i++) {
+                StoreStock store = nearby.get(i);
+                double metres = NearbyPurchaseFinder.distanceMetres(lat, lng, store.lat, store.lng);
+                rows[i] = formatDistance(metres) + " away: " + store.storeName;
+            }
+            new AlertDialog.Builder(this)
+                    .setTitle(ingredient + " bought nearby")
+                    .setItems(rows, (dialog, which) -> copyToClipboard(
+                            formatLatLng(nearby.get(which).lat, nearby.get(which).lng)))
+                    .setPositiveButton("Close", null)
+                    .show();
+        });
+    }
+
+    private void copyToClipboard(String latLon) {
+        android.content.ClipboardManager clipboard = (android.content.ClipboardManager)
+                getSystemService(Context.CLIPBOARD_SERVICE);
+        if (clipboard != null) {
+            clipboard.setPrimaryClip(android.content.ClipData.newPlainText("LatLong", latLon));
+            Toast.makeText(this, "Location copied: " + latLon, Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, "Failed to access clipboard", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    static String formatDistance(double metres) {
+        if (metres < 1000) return Math.round(metres) + " m";
+        return String.format(Locale.getDefault(), "%.1f km", metres / 1000);
+    }
+
+    // Display only; coordinates are stored as doubles and never parsed back
+    private static String formatLatLng(double lat, double lng) {
+        return lat + ", " + lng;
+    }
+
     private class IngredientsAdapter extends RecyclerView.Adapter<IngredientsAdapter.ViewHolder> {
 
-        private final List<String> ingredients;
-        private final List<String> purchased;
-        private final List<Boolean> purchasedStates;
+        private final List<RecipeIngredient> ingredients;
 
-        // Map ingredient -> location string ("lat, lon")
-        private final Map<String, String> purchaseLocations;
+        // Map ingredient -> where it was bought
+        private final Map<String, PurchaseLocation> purchaseLocations;
 
-        // Track which ingredient position is currently waiting for location permission
-        private int pendingLocationPos = -1;
+        // Ingredient positions ticked while the location permission prompt was up
+        private final List<Integer> pendingLocationPositions = new ArrayList<>();
 
-        IngredientsAdapter(List<String> ingredients, List<String> purchased, Map<String, Recipe.LatLng> savedLocations) {
+        IngredientsAdapter(List<RecipeIngredient> ingredients, List<PurchaseLocation> savedLocations) {
             this.ingredients = ingredients;
-            this.purchased = purchased;
-            this.purchasedStates = new ArrayList<>();
-            for (String ing : ingredients) {
-                purchasedStates.add(purchased.contains(ing));
-            }
 
             this.purchaseLocations = new HashMap<>();
             if (savedLocations != null) {
-                for (Map.Entry<String, Recipe.LatLng> entry : savedLocations.entrySet()) {
-                    Recipe.LatLng latLng = entry.getValue();
-                    String latLonStr = latLng.latitude + ", " + latLng.longitude;
-                    this.purchaseLocations.put(entry.getKey(), latLonStr);
+                for (PurchaseLocation location : savedLocations) {
+                    this.purchaseLocations.put(location.ingredient, location);
                 }
             }
         }
@@ -177,24 +243,26 @@ public class RecipeDetailActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            String ingredient = ingredients.get(position);
+            RecipeIngredient row = ingredients.get(position);
+            String ingredient = row.name;
             Context context = holder.itemView.getContext();
 
             holder.tvIngredientName.setText(ingredient);
+            holder.tvIngredientName.setOnClickListener(v ->
+                    showNearbyPurchases(ingredient, purchaseLocations.get(ingredient)));
 
             // Remove previous listener before changing checked state to avoid unwanted triggers
             holder.cbPurchasedToggle.setOnCheckedChangeListener(null);
-            boolean isPurchased = purchasedStates.get(position);
+            boolean isPurchased = row.purchased;
             holder.cbPurchasedToggle.setChecked(isPurchased);
 
             if (isPurchased && purchaseLocations.containsKey(ingredient)) {
-                String latLon = purchaseLocations.get(ingredient);
-
-                // Only toast for debugging if really needed, otherwise remove this line
-                // Toast.makeText(context, "pls check again " + latLon, Toast.LENGTH_SHORT).show();
+                PurchaseLocation location = purchaseLocations.get(ingredient);
+                String latLon = formatLatLng(location.lat, location.lng);
+                String store = ingredient == null ? null : storeNames.get(ingredient.toLowerCase(Locale.ROOT));
 
                 holder.tvPurchasedLabel.setVisibility(View.VISIBLE);
-                holder.tvPurchasedLabel.setText("Bought from here: " + latLon);
+                holder.tvPurchasedLabel.setText(store != null ? "Bought at " + store : "Bought from here: " + latLon);
 
                 holder.ivCopy.setVisibility(View.VISIBLE);
                 holder.ivCopy.setOnClickListener(v -> {
@@ -218,12 +286,15 @@ public class RecipeDetailActivity extends AppCompatActivity {
 
             // Re-attach the listener after setting checked state
             holder.cbPurchasedToggle.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                purchasedStates.set(position, isChecked);
+                row.purchased = isChecked;
+                purchaseWriter.setPurchased(row);
 
                 if (isChecked) {
-                    fetchLocationForIngredient(position, ingredient, holder);
+                    fetchLocationForIngredient(position);
                 } else {
                     purchaseLocations.remove(ingredient);
+                    if (ingredient != null) storeNames.remove(ingredient.toLowerCase(Locale.ROOT));
+                    purchaseWriter.removeLocation(ingredient);
                     holder.tvPurchasedLabel.setVisibility(View.GONE);
                     holder.tvPurchasedLabel.setText("");
                     holder.ivCopy.setVisibility(View.GONE);
@@ -238,34 +309,16 @@ public class RecipeDetailActivity extends AppCompatActivity {
             return ingredients.size();
         }
 
-        List<String> getPurchasedIngredients() {
-            List<String> list = new ArrayList<>();
-            for (int i = 0; i < ingredients.size(); i++) {
-                if (purchasedStates.get(i)) {
-                    list.add(ingredients.get(i));
-                }
+        // Only locations of ingredients that are still ticked are kept
+        List<PurchaseLocation> getPurchaseLocations() {
+            List<PurchaseLocation> list = new ArrayList<>();
+            for (RecipeIngredient row : ingredients) {
+                PurchaseLocation location = purchaseLocations.get(row.name);
+                if (row.purchased && location != null) list.add(location);
             }
             return list;
         }
 
-        // Convert purchaseLocations map of String lat/lon into Recipe.LatLng map for saving
-        Map<String, Recipe.LatLng> getPurchaseLocationsAsLatLngMap() {
-            Map<String, Recipe.LatLng> map = new HashMap<>();
-            for (Map.Entry<String, String> entry : purchaseLocations.entrySet()) {
-                String[] parts = entry.getValue().split(",");
-                if (parts.length == 2) {
-                    try {
-                        double lat = Double.parseDouble(parts[0].trim());
-                        double lon = Double.parseDouble(parts[1].trim());
-                        map.put(entry.getKey(), new Recipe.LatLng(lat, lon));
-                    } catch (NumberFormatException e) {
-                        // ignore invalid format
-                    }
-                }
-            }
-            return map;
-        }
-
         class ViewHolder extends RecyclerView.ViewHolder {
             TextView tvIngredientName;
             CheckBox cbPurchasedToggle;
@@ -282,37 +335,48 @@ public class RecipeDetailActivity extends AppCompatActivity {
             }
         }
 
-        private void fetchLocationForIngredient(int position, String ingredient, ViewHolder holder) {
+        private void fetchLocationForIngredient(int position) {
             if (ActivityCompat.checkSelfPermission(RecipeDetailActivity.this,
                     Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-                pendingLocationPos = position;
-                ActivityCompat.requestPermissions(RecipeDetailActivity.this,
-                        new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
-                        LOCATION_PERMISSION_REQUEST);
+                pendingLocationPositions.add(position);
+                if (pendingLocationPositions.size() == 1) {
+                    ActivityCompat.requestPermissions(RecipeDetailActivity.this,
+                            new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
+                            LOCATION_PERMISSION_REQUEST);
+                }
                 return;
             }
 
-            fusedLocationClient.getLastLocation()
-                    .addOnSuccessListener(RecipeDetailActivity.this, location -> {
-                        if (location != null) {
-                            String latLon = location.getLatitude() + ", " + location.getLongitude();
-                            purchaseLocations.put(ingredient, latLon);
-                            holder.tvPurchasedLabel.setVisibility(View.VISIBLE);
-                            holder.tvPurchasedLabel.setText("Bought from here: " + latLon);
-                        } else {
-                            Toast.makeText(RecipeDetailActivity.this,
-                                    "Unable to fetch location for " + ingredient, Toast.LENGTH_SHORT).show();
-                            purchasedStates.set(position, false);
-                            notifyItemChanged(position);
-                        }
-                    });
+            // Every tick inside the freshness window shares one fix
+            locationFixProvider.getFix(location -> {
+                RecipeIngredient row = ingredients.get(position);
+                if (!row.purchased) return; // unticked while the fix was on its way
+
+                if (location == null) {
+                    // Still bought, just without a place; unticking behind the user's back lost the tick
+                    Toast.makeText(RecipeDetailActivity.this,
+                            "No location fix, " + row.name + " saved without a place", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                PurchaseLocation purchase = new PurchaseLocation(recipe.id, row.name,
+                        location.getLatitude(), location.getLongitude(), System.currentTimeMillis());
+                purchaseLocations.put(row.name, purchase);
+                // Shows the coordinates until the flush has placed the new point in a store
+                if (row.name != null) storeNames.remove(row.name.toLowerCase(Locale.ROOT));
+                purchaseWriter.putLocation(purchase);
+                notifyItemChanged(position);
+            });
         }
 
         void retryPendingLocationFetch() {
-            if (pendingLocationPos != -1) {
-                notifyItemChanged(pendingLocationPos);
-                pendingLocationPos = -1;
-            }
+            List<Integer> positions = new ArrayList<>(pendingLocationPositions);
+            pendingLocationPositions.clear();
+            for (int position : positions) fetchLocationForIngredient(position);
+        }
+
+        // Without permission the ticks stay, they just get no place
+        void dropPendingLocationFetch() {
+            pendingLocationPositions.clear();
         }
     }
 }
@@ -5,10 +5,13 @@ import android.app.AlertDialog;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.telephony.SmsManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.InputType;
+import android.text.TextUtils;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -19,48 +22,92 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LiveData;
+import androidx.paging.PagingData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.buc.mealmate.data.AppDatabase;
 import com.buc.mealmate.data.Recipe;
+import com.buc.mealmate.data.RecipeListItem;
+import com.buc.mealmate.data.RecipeWithIngredients;
+import com.buc.mealmate.data.ShoppingListItem;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import kotlin.Unit;
+
 public class RecipeListActivity extends AppCompatActivity {
 
     private RecyclerView recyclerView;
     private RecipeAdapter adapter;
-    private AppDatabase db;
+    private RecipeRepository recipeRepository;
     private View btnAddRecipe, btnSendSms, btnCancelSelection;
     private Toolbar toolbar;
 
     private static final String PREFS_NAME = "MealMatePrefs";
     private static final String KEY_LOGGED_IN_USER = "loggedInUser";
+    private static final String KEY_LOGGED_IN_USER_ID = "loggedInUserId";
+
+    private LiveData<PagingData<RecipeListItem>> recipesLiveData;
+    private int recipeFilter = RecipeRepository.FILTER_ALL;
+
+    // Wait for a pause in typing before searching
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private Runnable pendingSearch;
 
     private boolean isInSelectionMode = false;
-    private List<Recipe> pendingSmsRecipes;
+    private int[] pendingSmsRecipeIds;
+    private int lastFailedSmsCount = -1;
     private String pendingSmsPhoneNumber;
 
     private static final int SMS_PERMISSION_REQUEST_CODE = 101;
 
+    private static final String STATE_SELECTION_MODE = "selection_mode";
+    private static final String STATE_SELECTED_IDS = "selected_ids";
+
+    private static final String EXPORT_FILE_NAME = "mealmate-recipes.json";
+    private AlertDialog transferDialog;
+
+    private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/json"), this::exportRecipes);
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::importRecipes);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_recipe_list_page);
 
-        db = AppDatabase.getInstance(this);
+        recipeRepository = new RecipeRepository(this);
 
         setupStatusBar();
         setupToolbar();
         setupViews();
         setupListeners();
+        observeSmsFailures();
+
+        if (savedInstanceState != null && savedInstanceState.getBoolean(STATE_SELECTION_MODE)) {
+            enterSelectionMode();
+            int[] selected = savedInstanceState.getIntArray(STATE_SELECTED_IDS);
+            if (selected != null) adapter.selectAll(selected);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_SELECTION_MODE, isInSelectionMode);
+        if (isInSelectionMode) outState.putIntArray(STATE_SELECTED_IDS, adapter.getSelectedIds());
     }
 
     private void setupStatusBar() {
@@ -104,6 +151,13 @@ public class RecipeListActivity extends AppCompatActivity {
         btnSendSms.setEnabled(false);
         btnSendSms.setTag("Select Recipes");
 
+        adapter = new RecipeAdapter(this, recipe -> confirmDelete(recipe));
+        recyclerView.setAdapter(adapter);
+        adapter.addLoadStateListener(loadStates -> {
+            btnSendSms.setEnabled(adapter.getItemCount() > 0);
+            return Unit.INSTANCE;
+        });
+
         loadRecipes();
     }
 
@@ -118,12 +172,12 @@ public class RecipeListActivity extends AppCompatActivity {
             if (!isInSelectionMode) {
                 enterSelectionMode();
             } else {
-                List<Recipe> selectedRecipes = adapter.getSelectedRecipes();
-                if (selectedRecipes.isEmpty()) {
+                int[] selectedIds = adapter.getSelectedIds();
+                if (selectedIds.length == 0) {
                     Toast.makeText(this, "Please select at least one recipe.", Toast.LENGTH_SHORT).show();
                     return;
                 }
-                promptPhoneNumberAndSendSms(selectedRecipes);
+                promptPhoneNumberAndSendSms(selectedIds);
             }
         });
 
@@ -138,6 +192,7 @@ public class RecipeListActivity extends AppCompatActivity {
         adapter.setSelectionMode(true);
         updateSendButtonText("Send SMS");
         btnCancelSelection.setVisibility(View.VISIBLE);
+        invalidateOptionsMenu();
         Toast.makeText(this, "Select recipes to send via SMS", Toast.LENGTH_SHORT).show();
     }
 
@@ -149,8 +204,20 @@ public class RecipeListActivity extends AppCompatActivity {
         }
         updateSendButtonText("Select Recipes");
         btnCancelSelection.setVisibility(View.GONE);
+        invalidateOptionsMenu();
         pendingSmsPhoneNumber = null;
-        pendingSmsRecipes = null;
+        pendingSmsRecipeIds = null;
+    }
+
+    // Tell the user when a queued message gives up; earlier failures aren't repeated
+    private void observeSmsFailures() {
+        SmsQueue.observeFailedCount(this).observe(this, count -> {
+            int failed = count == null ? 0 : count;
+            if (lastFailedSmsCount >= 0 && failed > lastFailedSmsCount) {
+                Toast.makeText(this, "An SMS could not be sent after several attempts", Toast.LENGTH_LONG).show();
+            }
+            lastFailedSmsCount = failed;
+        });
     }
 
     private void updateSendButtonText(String text) {
@@ -159,7 +226,7 @@ public class RecipeListActivity extends AppCompatActivity {
         }
     }
 
-    private void promptPhoneNumberAndSendSms(List<Recipe> selectedRecipes) {
+    private void promptPhoneNumberAndSendSms(int[] selectedIds) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Enter phone number");
         final EditText input = new EditText(this);
@@ -177,9 +244,9 @@ public class RecipeListActivity extends AppCompatActivity {
                         new String[]{Manifest.permission.SEND_SMS},
                         SMS_PERMISSION_REQUEST_CODE);
                 pendingSmsPhoneNumber = phoneNumber;
-                pendingSmsRecipes = selectedRecipes;
+                pendingSmsRecipeIds = selectedIds;
             } else {
-                sendSmsToSelected(phoneNumber, selectedRecipes);
+                sendSmsToSelected(phoneNumber, selectedIds);
             }
         });
 
@@ -187,57 +254,240 @@ public class RecipeListActivity extends AppCompatActivity {
         builder.show();
     }
 
-    private void sendSmsToSelected(String phoneNumber, List<Recipe> selectedRecipes) {
-        SmsManager smsManager = SmsManager.getDefault();
-        for (Recipe recipe : selectedRecipes) {
-            StringBuilder message = new StringBuilder();
-            message.append("Recipe: ").append(recipe.name).append("\n");
-            if (recipe.ingredients != null && !recipe.ingredients.isEmpty()) {
-                String formattedIngredients = recipe.ingredients.replaceAll("\\s*,\\s*", ", ");
-                message.append("Ingredients: ").append(formattedIngredients).append("\n");
-            }
-            if (recipe.instructions != null && !recipe.instructions.isEmpty()) {
-                message.append("Instructions: ").append(recipe.instructions);
-            }
-            List<String> parts = smsManager.divideMessage(message.toString());
-            smsManager.sendMultipartTextMessage(phoneNumber, null, new ArrayList<>(parts), null, null);
+    private void sendSmsToSelected(String phoneNumber, int[] selectedIds) {
+        // The list only holds names and status, so load the full recipes for the message body
+        recipeRepository.getWithIngredients(toList(selectedIds), recipes -> sendRecipesSms(phoneNumber, recipes));
+    }
+
+    private void sendRecipesSms(String phoneNumber, List<RecipeWithIngredients> recipes) {
+        List<String> texts = new ArrayList<>(recipes.size());
+        for (RecipeWithIngredients item : recipes) {
+            Recipe recipe = item.recipe;
+            texts.add(SmsEncoder.formatRecipe(recipe.name, item.getIngredientNames(), recipe.instructions));
         }
-        exitSelectionMode();
-        Toast.makeText(this, "SMS sent to selected recipes", Toast.LENGTH_SHORT).show();
+        // Several short recipes share one message instead of each paying for a mostly empty segment
+        List<String> messages = SmsEncoder.pack(texts);
+        int segments = SmsEncoder.totalSegments(messages);
+        boolean unicode = false;
+        for (String message : messages) unicode |= !SmsEncoder.cost(message).gsm7;
+
+        new AlertDialog.Builder(this)
+                .setTitle("Send " + recipes.size() + " recipes?")
+                .setMessage(messages.size() + " messages, " + segments + " SMS segments"
+                        + (unicode ? "\nSome recipes contain characters that need Unicode SMS." : ""))
+                .setPositiveButton("Send", (dialog, which) -> {
+                    // Sending, throttling and retries happen in the background queue
+                    SmsQueue.enqueue(this, phoneNumber, messages);
+                    exitSelectionMode();
+                    Toast.makeText(this, messages.size() + " SMS queued", Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
     }
 
     private void loadRecipes() {
-        List<Recipe> recipes = db.recipeDao().getAll();
-        if (adapter == null) {
-            adapter = new RecipeAdapter(this, recipes, recipe -> confirmDelete(recipe));
-            recyclerView.setAdapter(adapter);
-        } else {
-            adapter.setRecipes(recipes);
-        }
-        btnSendSms.setEnabled(!recipes.isEmpty());
+        recipeRepository.cancelSearch();
+        if (recipesLiveData != null) recipesLiveData.removeObservers(this);
+        recipesLiveData = recipeRepository.getPagedRecipes(recipeFilter);
+        recipesLiveData.observe(this, pagingData -> adapter.submitData(getLifecycle(), pagingData));
+    }
+
+    private void setRecipeFilter(int filter) {
+        if (filter == recipeFilter) return;
+        recipeFilter = filter;
+        loadRecipes();
     }
 
-    private void confirmDelete(Recipe recipe) {
+    private void confirmDelete(RecipeListItem recipe) {
         new AlertDialog.Builder(this)
                 .setTitle("Delete Recipe")
                 .setMessage("Are you sure you want to delete \"" + recipe.name + "\"?")
                 .setPositiveButton("Yes", (dialog, which) -> {
-                    db.recipeDao().delete(recipe);
-                    Toast.makeText(this, "Recipe deleted", Toast.LENGTH_SHORT).show();
-                    loadRecipes();
+                    recipeRepository.delete(recipe.id, () ->
+                            Toast.makeText(this, "Recipe deleted", Toast.LENGTH_SHORT).show());
                 })
                 .setNegativeButton("No", null)
                 .show();
     }
 
+    private void exportRecipes(Uri uri) {
+        if (uri == null) return;
+        showTransferDialog("Exporting recipes");
+        recipeRepository.exportRecipes(uri,
+                done -> updateTransferDialog("Exported " + done + " recipes"),
+                total -> finishTransfer("Exported " + total + " recipes"),
+                error -> finishTransfer("Export failed: " + error.getMessage()));
+    }
+
+    private void importRecipes(Uri uri) {
+        if (uri == null) return;
+        showTransferDialog("Importing recipes");
+        recipeRepository.importRecipes(uri,
+                done -> updateTransferDialog("Imported " + done + " recipes"),
+                total -> finishTransfer("Imported " + total + " recipes"),
+                error -> finishTransfer("Import failed: " + error.getMessage()));
+    }
+
+    private void showTransferDialog(String title) {
+        transferDialog = new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setMessage("Starting...")
+                .setCancelable(false)
+                .show();
+    }
+
+    private void updateTransferDialog(String message) {
+        if (transferDialog != null) transferDialog.setMessage(message);
+    }
+
+    private void finishTransfer(String message) {
+        if (transferDialog != null) {
+            transferDialog.dismiss();
+            transferDialog = null;
+        }
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+    }
+
+    private List<Integer> selectedRecipeIds() {
+        return toList(adapter.getSelectedIds());
+    }
+
+    private static List<Integer> toList(int[] ids) {
+        List<Integer> list = new ArrayList<>(ids.length);
+        for (int id : ids) list.add(id);
+        return list;
+    }
+
+    private void selectAllRecipes() {
+        recipeRepository.getRecipeIds(recipeFilter, ids -> {
+            if (!isInSelectionMode) return;
+            adapter.selectAll(ids);
+            Toast.makeText(this, adapter.getSelectedCount() + " recipes selected", Toast.LENGTH_SHORT).show();
+        });
+    }
+
+    private void confirmDeleteSelected() {
+        List<Integer> ids = selectedRecipeIds();
+        if (ids.isEmpty()) {
+            Toast.makeText(this, "Please select at least one recipe.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Delete Recipes")
+                .setMessage("Are you sure you want to delete " + ids.size() + " recipes?")
+                .setPositiveButton("Yes", (dialog, which) -> {
+                    exitSelectionMode();
+                    recipeRepository.delete(ids, () ->
+                            Toast.makeText(this, ids.size() + " recipes deleted", Toast.LENGTH_SHORT).show());
+                })
+                .setNegativeButton("No", null)
+                .show();
+    }
+
+    // One combined list of what is still missing, handed to the delegation screen as a single message
+    private void openShoppingList() {
+        List<Integer> ids = selectedRecipeIds();
+        if (ids.isEmpty()) {
+            Toast.makeText(this, "Please select at least one recipe.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        recipeRepository.getShoppingList(ids, items -> {
+            if (items.isEmpty()) {
+                Toast.makeText(this, "Everything is already purchased", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            StringBuilder message = new StringBuilder("Shopping list:");
+            for (ShoppingListItem item : items) {
+                message.append("\n").append(item.name);
+                if (item.recipeCount > 1) message.append(" x").append(item.recipeCount);
+            }
+            Intent intent = new Intent(this, ItemDelegationActivity.class);
+            intent.putExtra(ItemDelegationActivity.EXTRA_MESSAGE, message.toString());
+            startActivity(intent);
+        });
+    }
+
+    // Stops covering everything the selected recipes miss, from here if a location fix is allowed
+    private void planTrip() {
+        List<Integer> ids = selectedRecipeIds();
+        if (ids.isEmpty()) {
+            Toast.makeText(this, "Please select at least one recipe.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            showTripPlan(ids, Double.NaN, Double.NaN);
+            return;
+        }
+        FusedLocationFixProvider.get(this).getFix(location -> {
+            if (isFinishing()) return;
+            if (location == null) showTripPlan(ids, Double.NaN, Double.NaN);
+            else showTripPlan(ids, location.getLatitude(), location.getLongitude());
+        });
+    }
+
+    private void showTripPlan(List<Integer> ids, double lat, double lng) {
+        recipeRepository.planTrip(ids, lat, lng, plan -> {
+            if (isFinishing()) return;
+            if (plan.stops.isEmpty() && plan.unplaced.isEmpty()) {
+                Toast.makeText(this, "Everything is already purchased", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            StringBuilder message = new StringBuilder();
+            if (!plan.stops.isEmpty() && Double.isNaN(lat)) {
+                message.append("No current location, starting at the first stop.\n\n");
+            }
+            for (int i = 0; i < plan.stops.size(); i++) {
+                TripPlanner.Stop stop = plan.stops.get(i);
+                message.append(i + 1).append(". ").append(stop.storeName);
+                if (stop.legMetres > 0) {
+                    message.append(" (").append(RecipeDetailActivity.formatDistance(stop.legMetres)).append(")");
+                }
+                message.append(": ").append(TextUtils.join(", ", stop.ingredients)).append("\n");
+            }
+            if (!plan.unplaced.isEmpty()) {
+                if (!plan.stops.isEmpty()) message.append("\n");
+                message.append("Not bought at a known store yet: ")
+                        .append(TextUtils.join(", ", plan.unplaced));
+            }
+            String title = plan.stops.isEmpty() ? "No stores to visit"
+                    : plan.stops.size() + (plan.stops.size() == 1 ? " stop, " : " stops, ")
+                    + RecipeDetailActivity.formatDistance(plan.totalMetres);
+            new AlertDialog.Builder(this)
+                    .setTitle(title)
+                    .setMessage(message.toString().trim())
+                    .setPositiveButton("Close", null)
+                    .show();
+        });
+    }
+
+    private void markSelectedPurchased() {
+        List<Integer> ids = selectedRecipeIds();
+        if (ids.isEmpty()) {
+            Toast.makeText(this, "Please select at least one recipe.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        exitSelectionMode();
+        recipeRepository.markAllPurchased(ids, () ->
+                Toast.makeText(this, "Ingredients marked as purchased", Toast.LENGTH_SHORT).show());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (transferDialog != null) transferDialog.dismiss();
+        searchHandler.removeCallbacksAndMessages(null);
+        recipeRepository.cancelSearch();
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
                                            @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == SMS_PERMISSION_REQUEST_CODE) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                if (pendingSmsPhoneNumber != null && pendingSmsRecipes != null) {
-                    sendSmsToSelected(pendingSmsPhoneNumber, pendingSmsRecipes);
+                if (pendingSmsPhoneNumber != null && pendingSmsRecipeIds != null) {
+                    sendSmsToSelected(pendingSmsPhoneNumber, pendingSmsRecipeIds);
                 }
             } else {
                 Toast.makeText(this, "SMS Permission denied", Toast.LENGTH_SHORT).show();
@@ -245,23 +495,101 @@ public class RecipeListActivity extends AppCompatActivity {
         }
     }
 
-    @Override
-    protected void onResume() {
-        super.onResume();
-        loadRecipes();
-    }
-
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.drawer_menu, menu);
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        if (searchView != null) {
+            searchView.setQueryHint("Search recipes");
+            searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+                @Override
+                public boolean onQueryTextSubmit(String query) {
+                    scheduleSearch(query, 0);
+                    return true;
+                }
+
+                @Override
+                public boolean onQueryTextChange(String newText) {
+                    scheduleSearch(newText, SEARCH_DEBOUNCE_MS);
+                    return true;
+                }
+            });
+        }
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.setGroupVisible(R.id.group_selection, isInSelectionMode);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    private void scheduleSearch(String text, long delayMs) {
+        if (pendingSearch != null) searchHandler.removeCallbacks(pendingSearch);
+        pendingSearch = () -> runSearch(text.trim());
+        searchHandler.postDelayed(pendingSearch, delayMs);
+    }
+
+    private void runSearch(String text) {
+        if (text.isEmpty()) {
+            // Back to the live paged list
+            recipeRepository.cancelSearch();
+            if (recipesLiveData == null || !recipesLiveData.hasObservers()) loadRecipes();
+            return;
+        }
+        // Detach the paged list so table changes don't overwrite the results
+        if (recipesLiveData != null) recipesLiveData.removeObservers(this);
+        recipeRepository.search(text, results ->
+                adapter.submitData(getLifecycle(), PagingData.from(results)));
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
-        if (item.getItemId() == R.id.action_logout) {
+        int itemId = item.getItemId();
+        if (itemId == R.id.action_filter_all
+                || itemId == R.id.action_filter_ready
+                || itemId == R.id.action_filter_not_ready) {
+            item.setChecked(true);
+            setRecipeFilter(itemId == R.id.action_filter_ready ? RecipeRepository.FILTER_READY
+                    : itemId == R.id.action_filter_not_ready ? RecipeRepository.FILTER_NOT_READY
+                    : RecipeRepository.FILTER_ALL);
+            return true;
+        }
+        if (itemId == R.id.action_select_all) {
+            selectAllRecipes();
+            return true;
+        }
+        if (itemId == R.id.action_delete_selected) {
+            confirmDeleteSelected();
+            return true;
+        }
+        if (itemId == R.id.action_shopping_list) {
+            openShoppingList();
+            return true;
+        }
+        if (itemId == R.id.action_plan_trip) {
+            planTrip();
+            return true;
+        }
+        if (itemId == R.id.action_mark_purchased) {
+            markSelectedPurchased();
+            return true;
+        }
+        if (itemId == R.id.action_cook_now) {
+            startActivity(new Intent(this, CookNowActivity.class));
+            return true;
+        }
+        if (itemId == R.id.action_export) {
+            exportLauncher.launch(EXPORT_FILE_NAME);
+            return true;
+        }
+        if (itemId == R.id.action_import) {
+            importLauncher.launch(new String[]{"application/json", "text/plain", "application/octet-stream"});
+            return true;
+        }
+        if (itemId == R.id.action_logout) {
             SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-            prefs.edit().remove(KEY_LOGGED_IN_USER).apply();
+            prefs.edit().remove(KEY_LOGGED_IN_USER).remove(KEY_LOGGED_IN_USER_ID).apply();
             Intent intent = new Intent(this, MainActivityPage.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
             startActivity(intent);
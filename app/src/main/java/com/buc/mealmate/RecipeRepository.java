@@ -0,0 +1,430 @@
+package com.buc.mealmate;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.FtsMatch;
+import com.buc.mealmate.data.IngredientStore;
+import com.buc.mealmate.data.PurchaseLocation;
+import com.buc.mealmate.data.Recipe;
+import com.buc.mealmate.data.RecipeDao;
+import com.buc.mealmate.data.RecipeListItem;
+import com.buc.mealmate.data.RecipeWithIngredients;
+import com.buc.mealmate.data.ShoppingListItem;
+import com.buc.mealmate.data.StoreDao;
+import com.buc.mealmate.data.StoreStock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Async access to recipes. DAO calls run on {@link AppDatabase#databaseExecutor}
+ * and results are delivered back on the main thread.
+ */
+public class RecipeRepository {
+
+    // Rows per page, and the most rows kept in memory before older pages are dropped
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_LOADED_ROWS = 300;
+
+    // List filters for getPagedRecipes
+    public static final int FILTER_ALL = 0;
+    public static final int FILTER_READY = 1;
+    public static final int FILTER_NOT_READY = 2;
+
+    // Best-ranked search hits shown, and per-column weights for name, ingredients, instructions
+    private static final int SEARCH_LIMIT = 200;
+    private static final double[] SEARCH_COLUMN_WEIGHTS = {10.0, 4.0, 1.0};
+
+    // Searches run on their own thread so typing never queues behind writes
+    private static final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private static final AtomicInteger searchGeneration = new AtomicInteger();
+
+    // Session written by LoginActivity; every list, search and insert is scoped to this account
+    private static final String PREFS_NAME = "MealMatePrefs";
+    private static final String KEY_LOGGED_IN_USER_ID = "loggedInUserId";
+    private static final int NO_USER = -1;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private final ContentResolver contentResolver;
+    private final AppDatabase db;
+    private final RecipeDao recipeDao;
+    private final RecipeTransfer recipeTransfer;
+    private final NearbyPurchaseFinder nearbyPurchaseFinder;
+    private final StoreClusterer storeClusterer;
+    private final PantryIndex pantryIndex;
+    private final StoreDao storeDao;
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int userId;
+
+    public RecipeRepository(Context context) {
+        db = AppDatabase.getInstance(context);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        userId = prefs.getInt(KEY_LOGGED_IN_USER_ID, NO_USER);
+        contentResolver = context.getApplicationContext().getContentResolver();
+        recipeDao = db.recipeDao();
+        recipeTransfer = new RecipeTransfer(db, userId);
+        pantryIndex = PantryIndex.forUser(db, userId);
+        nearbyPurchaseFinder = new NearbyPurchaseFinder(db.purchaseLocationDao(), userId);
+        storeClusterer = new StoreClusterer(db);
+        storeDao = db.storeDao();
+        executor = AppDatabase.databaseExecutor;
+    }
+
+    // Room invalidates the paging source on every write, so observers stay current without reloading
+    public LiveData<PagingData<RecipeListItem>> getPagedRecipes(int filter) {
+        Pager<Integer, RecipeListItem> pager = new Pager<>(
+                new PagingConfig(PAGE_SIZE, PAGE_SIZE, false, PAGE_SIZE * 2, MAX_LOADED_ROWS),
+                () -> {
+                    if (filter == FILTER_READY) return recipeDao.getReadyPaged(userId);
+                    if (filter == FILTER_NOT_READY) return recipeDao.getNotReadyPaged(userId);
+                    return recipeDao.getListPaged(userId);
+                });
+        return PagingLiveData.getLiveData(pager);
+    }
+
+    // Every recipe id the filter matches, for select-all
+    public void getRecipeIds(int filter, Callback<int[]> callback) {
+        executor.execute(() -> {
+            int[] ids;
+            try (Cursor cursor = filter == FILTER_READY ? recipeDao.getReadyIdsCursor(userId)
+                    : filter == FILTER_NOT_READY ? recipeDao.getNotReadyIdsCursor(userId)
+                    : recipeDao.getIdsCursor(userId)) {
+                ids = new int[cursor.getCount()];
+                int n = 0;
+                while (cursor.moveToNext()) ids[n++] = cursor.getInt(0);
+                if (n < ids.length) ids = Arrays.copyOf(ids, n);
+            }
+            final int[] result = ids;
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    /**
+     * Ranked prefix search over name, ingredients and instructions. Starting a new search
+     * cancels any still in flight; a superseded search never calls back.
+     */
+    public void search(String text, Callback<List<RecipeListItem>> callback) {
+        int generation = searchGeneration.incrementAndGet();
+        String query = toPrefixQuery(text);
+        searchExecutor.execute(() -> {
+            if (generation != searchGeneration.get()) return;
+            if (query.isEmpty()) {
+                postSearchResult(generation, new ArrayList<>(), callback);
+                return;
+            }
+            List<FtsMatch> matches = recipeDao.searchMatches(query, userId);
+            if (generation != searchGeneration.get()) return;
+
+            final Map<Integer, Double> scores = new HashMap<>();
+            for (FtsMatch match : matches) scores.put(match.id, score(match.matchInfo));
+            List<Integer> ids = new ArrayList<>(scores.keySet());
+            Collections.sort(ids, (a, b) -> Double.compare(scores.get(b), scores.get(a)));
+            if (ids.size() > SEARCH_LIMIT) ids = new ArrayList<>(ids.subList(0, SEARCH_LIMIT));
+
+            List<RecipeListItem> items = ids.isEmpty() ? new ArrayList<>() : recipeDao.getListItemsByIds(ids);
+            Collections.sort(items, (a, b) -> Double.compare(scores.get(b.id), scores.get(a.id)));
+            postSearchResult(generation, items, callback);
+        });
+    }
+
+    public void cancelSearch() {
+        searchGeneration.incrementAndGet();
+    }
+
+    private void postSearchResult(int generation, List<RecipeListItem> items,
+                                  Callback<List<RecipeListItem>> callback) {
+        mainHandler.post(() -> {
+            if (generation == searchGeneration.get()) callback.onResult(items);
+        });
+    }
+
+    // "chick pea" -> "chick* pea*": every term must match, as a prefix
+    private static String toPrefixQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        for (String term : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (term.isEmpty()) continue;
+            if (query.length() > 0) query.append(' ');
+            query.append(term).append('*');
+        }
+        return query.toString();
+    }
+
+    // matchinfo('pcx'): phrase count, column count, then per phrase/column
+    // {hits in this row, hits in all rows, rows with hits}
+    private static double score(byte[] matchInfo) {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns && c < SEARCH_COLUMN_WEIGHTS.length; c++) {
+                int base = 2 + 3 * (p * columns + c);
+                int hitsThisRow = info.get(base);
+                int hitsAllRows = info.get(base + 1);
+                if (hitsThisRow > 0) score += SEARCH_COLUMN_WEIGHTS[c] * hitsThisRow / hitsAllRows;
+            }
+        }
+        return score;
+    }
+
+    public void getWithIngredients(int id, Callback<RecipeWithIngredients> callback) {
+        executor.execute(() -> {
+            RecipeWithIngredients recipe = recipeDao.getWithIngredients(id);
+            mainHandler.post(() -> callback.onResult(recipe));
+        });
+    }
+
+    public void getWithIngredients(List<Integer> ids, Callback<List<RecipeWithIngredients>> callback) {
+        executor.execute(() -> {
+            // Select-all can hand over more ids than one IN (...) may bind
+            List<RecipeWithIngredients> recipes = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i += RecipeDao.MAX_BATCH_IDS) {
+                recipes.addAll(recipeDao.getWithIngredientsByIds(
+                        ids.subList(i, Math.min(ids.size(), i + RecipeDao.MAX_BATCH_IDS))));
+            }
+            mainHandler.post(() -> callback.onResult(recipes));
+        });
+    }
+
+    // Unpurchased ingredients across the recipes, most needed first
+    public void getShoppingList(List<Integer> recipeIds, Callback<List<ShoppingListItem>> callback) {
+        executor.execute(() -> {
+            List<ShoppingListItem> items;
+            if (recipeIds.size() <= RecipeDao.MAX_BATCH_IDS) {
+                items = recipeDao.getShoppingList(recipeIds);
+            } else {
+                // Chunks hold disjoint recipes, so per-chunk counts simply add up
+                Map<String, ShoppingListItem> merged = new LinkedHashMap<>();
+                for (int i = 0; i < recipeIds.size(); i += RecipeDao.MAX_BATCH_IDS) {
+                    List<Integer> chunk = recipeIds.subList(i, Math.min(recipeIds.size(), i + RecipeDao.MAX_BATCH_IDS));
+                    for (ShoppingListItem item : recipeDao.getShoppingList(chunk)) {
+                        ShoppingListItem existing = merged.get(item.name.toLowerCase(Locale.ROOT));
+                        if (existing == null) merged.put(item.name.toLowerCase(Locale.ROOT), item);
+                        else existing.recipeCount += item.recipeCount;
+                    }
+                }
+                items = new ArrayList<>(merged.values());
+                Collections.sort(items, (a, b) -> Integer.compare(b.recipeCount, a.recipeCount));
+            }
+            mainHandler.post(() -> callback.onResult(items));
+        });
+    }
+
+    // What the recipes still miss, spread over remembered stores; startLat is NaN without a fix
+    public void planTrip(List<Integer> recipeIds, double startLat, double startLng,
+                         Callback<TripPlanner.Plan> callback) {
+        executor.execute(() -> {
+            List<String> missing = new ArrayList<>();
+            for (int i = 0; i < recipeIds.size(); i += RecipeDao.MAX_BATCH_IDS) {
+                List<Integer> chunk = recipeIds.subList(i, Math.min(recipeIds.size(), i + RecipeDao.MAX_BATCH_IDS));
+                for (ShoppingListItem item : recipeDao.getShoppingList(chunk)) missing.add(item.name);
+            }
+            List<StoreStock> stock = new ArrayList<>();
+            for (int i = 0; i < missing.size(); i += RecipeDao.MAX_BATCH_IDS) {
+                stock.addAll(storeDao.getStockFor(userId,
+                        missing.subList(i, Math.min(missing.size(), i + RecipeDao.MAX_BATCH_IDS))));
+            }
+            TripPlanner.Plan plan = TripPlanner.plan(missing, stock, startLat, startLng);
+            mainHandler.post(() -> callback.onResult(plan));
+        });
+    }
+
+    // Recipes ranked by how much of them is already on hand, best first
+    public void rankByPantry(int limit, Callback<List<PantryIndex.Match>> callback) {
+        executor.execute(() -> {
+            List<PantryIndex.Match> matches = pantryIndex.rank(limit);
+            mainHandler.post(() -> callback.onResult(matches));
+        });
+    }
+
+    // Store name per ingredient of the recipe, keyed lower-case; unclustered points are left out
+    public void getStoreNames(int recipeId, Callback<Map<String, String>> callback) {
+        executor.execute(() -> {
+            Map<String, String> names = new HashMap<>();
+            for (IngredientStore row : storeDao.getStoresForRecipe(recipeId)) {
+                if (row.ingredient != null) names.put(row.ingredient.toLowerCase(Locale.ROOT), row.storeName);
+            }
+            mainHandler.post(() -> callback.onResult(names));
+        });
+    }
+
+    // Stores where this account bought the ingredient before, nearest first
+    public void findNearbyPurchases(String ingredient, double lat, double lng, int limit,
+                                    Callback<List<StoreStock>> callback) {
+        executor.execute(() -> {
+            List<StoreStock> nearby = nearbyPurchaseFinder.nearest(ingredient, lat, lng, limit);
+            mainHandler.post(() -> callback.onResult(nearby));
+        });
+    }
+
+    public void insert(Recipe recipe, List<String> ingredientNames, Runnable onDone) {
+        // NO_USER would break the users foreign key; unowned rows go to the next login instead
+        recipe.userId = userId == NO_USER ? null : userId;
+        executor.execute(() -> {
+            // Index updates run inside the write's transaction, so a concurrent rebuild can't miss them
+            runIndexedTransaction(() -> {
+                int recipeId = recipeDao.insertWithIngredients(recipe, ingredientNames);
+                pantryIndex.addRecipe(recipeId, recipe.name, ingredientNames);
+            });
+            postDone(onDone);
+        });
+    }
+
+    // A failed write is reported instead of leaving the caller waiting for onDone
+    public void applyPurchaseChanges(int recipeId, List<Integer> purchasedIds, List<Integer> unpurchasedIds,
+                                     List<PurchaseLocation> upserts, List<String> removedLocations,
+                                     Runnable onDone, Callback<RuntimeException> onError) {
+        executor.execute(() -> {
+            try {
+                runIndexedTransaction(() -> {
+                    List<String> gained = recipeDao.getNamesFlipping(purchasedIds, true);
+                    List<String> lost = recipeDao.getNamesFlipping(unpurchasedIds, false);
+                    // Points that move or go leave their stores; moved ones rejoin in clusterPending
+                    List<String> touched = new ArrayList<>(removedLocations);
+                    for (PurchaseLocation location : upserts) touched.add(location.ingredient);
+                    List<Integer> leftStores = storeDao.getStoreIds(recipeId, touched);
+                    recipeDao.applyPurchaseChanges(recipeId, purchasedIds, unpurchasedIds, upserts, removedLocations);
+                    storeClusterer.recount(leftStores);
+                    pantryIndex.adjustPantry(gained, 1);
+                    pantryIndex.adjustPantry(lost, -1);
+                });
+            } catch (RuntimeException e) {
+                mainHandler.post(() -> onError.onResult(e));
+                return;
+            }
+            try {
+                // New points join their store right away, so the caller can show it when this returns
+                if (!upserts.isEmpty()) storeClusterer.clusterPending();
+            } finally {
+                // The write itself landed; points left unclustered are caught up at the next launch
+                postDone(onDone);
+            }
+        });
+    }
+
+    public void delete(int recipeId, Runnable onDone) {
+        executor.execute(() -> {
+            runIndexedTransaction(() -> {
+                List<Integer> ids = Collections.singletonList(recipeId);
+                List<String> purchased = recipeDao.getIngredientNames(ids, true);
+                List<Integer> leftStores = storeDao.getStoreIdsForRecipes(ids);
+                recipeDao.deleteById(recipeId);
+                storeClusterer.recount(leftStores);
+                pantryIndex.removeRecipes(ids, purchased);
+            });
+            postDone(onDone);
+        });
+    }
+
+    public void delete(List<Integer> recipeIds, Runnable onDone) {
+        executor.execute(() -> {
+            runIndexedTransaction(() -> {
+                List<String> purchased = recipeDao.getIngredientNames(recipeIds, true);
+                List<Integer> leftStores = storeDao.getStoreIdsForRecipes(recipeIds);
+                recipeDao.deleteByIds(recipeIds);
+                storeClusterer.recount(leftStores);
+                pantryIndex.removeRecipes(recipeIds, purchased);
+            });
+            postDone(onDone);
+        });
+    }
+
+    // Marks every ingredient of these recipes purchased; locations are left as they are
+    public void markAllPurchased(List<Integer> recipeIds, Runnable onDone) {
+        executor.execute(() -> {
+            runIndexedTransaction(() -> {
+                List<String> gained = recipeDao.getIngredientNames(recipeIds, false);
+                recipeDao.markAllPurchased(recipeIds);
+                pantryIndex.adjustPantry(gained, 1);
+            });
+            postDone(onDone);
+        });
+    }
+
+    // Streams every recipe to the document at uri; onProgress gets the running count
+    public void exportRecipes(Uri uri, Callback<Integer> onProgress, Callback<Integer> onDone,
+                              Callback<IOException> onError) {
+        executor.execute(() -> {
+            try (OutputStream out = contentResolver.openOutputStream(uri, "wt")) {
+                if (out == null) throw new IOException("Cannot open " + uri);
+                int count = recipeTransfer.exportTo(out, done -> mainHandler.post(() -> onProgress.onResult(done)));
+                mainHandler.post(() -> onDone.onResult(count));
+            } catch (IOException e) {
+                mainHandler.post(() -> onError.onResult(e));
+            } catch (RuntimeException e) {
+                // Database failures would otherwise kill the executor thread and strand the progress dialog
+                IOException error = new IOException(e);
+                mainHandler.post(() -> onError.onResult(error));
+            }
+        });
+    }
+
+    // Batches already committed stay imported if a later part of the file is malformed
+    public void importRecipes(Uri uri, Callback<Integer> onProgress, Callback<Integer> onDone,
+                              Callback<IOException> onError) {
+        executor.execute(() -> {
+            try (InputStream in = contentResolver.openInputStream(uri)) {
+                if (in == null) throw new IOException("Cannot open " + uri);
+                int count = recipeTransfer.importFrom(in, done -> mainHandler.post(() -> onProgress.onResult(done)));
+                mainHandler.post(() -> onDone.onResult(count));
+            } catch (IOException e) {
+                mainHandler.post(() -> onError.onResult(e));
+            } catch (RuntimeException e) {
+                // Database failures would otherwise kill the executor thread and strand the progress dialog
+                IOException error = new IOException(e);
+                mainHandler.post(() -> onError.onResult(error));
+            } finally {
+                // Batches committed before a failure are in the database too
+                PantryIndex.invalidate();
+            }
+        });
+    }
+
+    // For writes that update the pantry index as they go: a rollback undoes the rows but not
+    // the index, so it is dropped and rebuilt from what actually committed
+    private void runIndexedTransaction(Runnable body) {
+        try {
+            db.runInTransaction(body);
+        } catch (RuntimeException e) {
+            PantryIndex.invalidate();
+            throw e;
+        }
+    }
+
+    private void postDone(Runnable onDone) {
+        if (onDone != null) mainHandler.post(onDone);
+    }
+}
@@ -0,0 +1,309 @@
+package com.buc.mealmate;
+
+import android.database.sqlite.SQLiteException;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.DatabaseTriggers;
+import com.buc.mealmate.data.PurchaseLocation;
+import com.buc.mealmate.data.Recipe;
+import com.buc.mealmate.data.RecipeDao;
+import com.buc.mealmate.data.RecipeIngredient;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams recipes to and from a JSON file. Only one batch of recipes is held in memory
+ * at a time, and each imported batch is committed in its own transaction. Call off the main thread.
+ *
+ * <pre>
+ * {"version": 1, "recipes": [
+ *   {"name": "...", "instructions": "...",
+ *    "ingredients": [{"name": "...", "purchased": false}],
+ *    "locations": [{"ingredient": "...", "lat": 0.0, "lng": 0.0, "timestamp": 0}]}
+ * ]}
+ * </pre>
+ */
+public class RecipeTransfer {
+
+    public static final int FORMAT_VERSION = 1;
+    private static final int BATCH_SIZE = 500; // Stays under SQLite's 999 bind-argument limit
+    private static final int NO_USER = -1;
+
+    public interface ProgressListener {
+        void onProgress(int recipesDone);
+    }
+
+    private final AppDatabase db;
+    private final RecipeDao recipeDao;
+    private final int userId; // Exports this account's recipes, and imports into it
+    // Owner stamped on imported rows; null without a session, so the next login claims them
+    private final Integer owner;
+
+    public RecipeTransfer(AppDatabase db, int userId) {
+        this.db = db;
+        this.recipeDao = db.recipeDao();
+        this.userId = userId;
+        this.owner = userId == NO_USER ? null : userId;
+    }
+
+    public int exportTo(OutputStream out, ProgressListener listener) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        int exported = 0;
+        try {
+            writer.beginObject();
+            writer.name("version").value(FORMAT_VERSION);
+            writer.name("recipes").beginArray();
+
+            int afterId = 0;
+            List<Recipe> page;
+            while (!(page = recipeDao.getPageAfter(userId, afterId, BATCH_SIZE)).isEmpty()) {
+                List<Integer> ids = new ArrayList<>(page.size());
+                for (Recipe recipe : page) ids.add(recipe.id);
+                // Both lists come back grouped by recipe, in page order
+                List<RecipeIngredient> ingredients = recipeDao.getIngredientsFor(ids);
+                List<PurchaseLocation> locations = recipeDao.getLocationsFor(ids);
+
+                int i = 0;
+                int l = 0;
+                for (Recipe recipe : page) {
+                    writer.beginObject();
+                    writer.name("name").value(recipe.name);
+                    writer.name("instructions").value(recipe.instructions);
+
+                    writer.name("ingredients").beginArray();
+                    for (; i < ingredients.size() && ingredients.get(i).recipeId == recipe.id; i++) {
+                        RecipeIngredient ingredient = ingredients.get(i);
+                        writer.beginObject();
+                        writer.name("name").value(ingredient.name);
+                        writer.name("purchased").value(ingredient.purchased);
+                        writer.endObject();
+                    }
+                    writer.endArray();
+
+                    writer.name("locations").beginArray();
+                    for (; l < locations.size() && locations.get(l).recipeId == recipe.id; l++) {
+                        PurchaseLocation location = locations.get(l);
+                        writer.beginObject();
+                        writer.name("ingredient").value(location.ingredient);
+                        writer.name("lat").value(location.lat);
+                        writer.name("lng").value(location.lng);
+                        writer.name("timestamp").value(location.timestamp);
+                        writer.endObject();
+                    }
+                    writer.endArray();
+
+                    writer.endObject();
+                }
+
+                exported += page.size();
+                afterId = page.get(page.size() - 1).id;
+                if (listener != null) listener.onProgress(exported);
+            }
+
+            writer.endArray();
+            writer.endObject();
+        } finally {
+            writer.close();
+        }
+        return exported;
+    }
+
+    public int importFrom(InputStream in, ProgressListener listener) throws IOException {
+        JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        int imported = 0;
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("version")) {
+                    int version = reader.nextInt();
+                    if (version > FORMAT_VERSION) {
+                        throw new IOException("Unsupported recipe file version " + version);
+                    }
+                } else if (field.equals("recipes")) {
+                    List<ImportedRecipe> batch = new ArrayList<>(BATCH_SIZE);
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        batch.add(readRecipe(reader));
+                        if (batch.size() == BATCH_SIZE) {
+                            imported += insertBatch(batch);
+                            batch.clear();
+                            if (listener != null) listener.onProgress(imported);
+                        }
+                    }
+                    reader.endArray();
+                    if (!batch.isEmpty()) {
+                        imported += insertBatch(batch);
+                        if (listener != null) listener.onProgress(imported);
+                    }
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (SQLiteException e) {
+            // Full disk and the like: the file is fine, saving it is not
+            throw new IOException("Could not save imported recipes", e);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Not a MealMate recipe file", e);
+        } finally {
+            reader.close();
+        }
+        return imported;
+    }
+
+    private int insertBatch(List<ImportedRecipe> batch) {
+        db.runInTransaction(() -> {
+            // The FTS triggers would rebuild a recipe's ingredient text once per ingredient row;
+            // the batch is indexed once at the end instead
+            SupportSQLiteDatabase connection = db.getOpenHelper().getWritableDatabase();
+            DatabaseTriggers.suspendRecipeFts(connection);
+
+            List<Recipe> recipes = new ArrayList<>(batch.size());
+            for (ImportedRecipe item : batch) {
+                item.recipe.userId = owner;
+                recipes.add(item.recipe);
+            }
+            long[] ids = recipeDao.insertAll(recipes);
+
+            List<Integer> recipeIds = new ArrayList<>(ids.length);
+            List<RecipeIngredient> ingredients = new ArrayList<>();
+            List<PurchaseLocation> locations = new ArrayList<>();
+            for (int r = 0; r < batch.size(); r++) {
+                ImportedRecipe item = batch.get(r);
+                int recipeId = (int) ids[r];
+                recipeIds.add(recipeId);
+                for (int i = 0; i < item.ingredientNames.size(); i++) {
+                    RecipeIngredient ingredient = new RecipeIngredient(recipeId, item.ingredientNames.get(i), i);
+                    ingredient.purchased = item.purchased.get(i);
+                    ingredients.add(ingredient);
+                }
+                for (PurchaseLocation location : item.locations) {
+                    location.recipeId = recipeId;
+                    locations.add(location);
+                }
+            }
+            recipeDao.insertIngredients(ingredients);
+            recipeDao.upsertLocations(locations);
+
+            recipeDao.indexRecipes(recipeIds);
+            DatabaseTriggers.resumeRecipeFts(connection);
+        });
+        return batch.size();
+    }
+
+    private static ImportedRecipe readRecipe(JsonReader reader) throws IOException {
+        ImportedRecipe item = new ImportedRecipe();
+        String name = null;
+        String instructions = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = nextStringOrNull(reader);
+                    break;
+                case "instructions":
+                    instructions = nextStringOrNull(reader);
+                    break;
+                case "ingredients":
+                    reader.beginArray();
+                    while (reader.hasNext()) readIngredient(reader, item);
+                    reader.endArray();
+                    break;
+                case "locations":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        PurchaseLocation location = readLocation(reader);
+                        if (location != null) item.locations.add(location);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        item.recipe = new Recipe(name, instructions);
+        return item;
+    }
+
+    private static void readIngredient(JsonReader reader, ImportedRecipe item) throws IOException {
+        String name = null;
+        boolean purchased = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = nextStringOrNull(reader);
+                    break;
+                case "purchased":
+                    purchased = reader.nextBoolean();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (name == null || name.trim().isEmpty()) return;
+        item.ingredientNames.add(name.trim());
+        item.purchased.add(purchased);
+    }
+
+    private static PurchaseLocation readLocation(JsonReader reader) throws IOException {
+        String ingredient = null;
+        double lat = Double.NaN;
+        double lng = Double.NaN;
+        long timestamp = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "ingredient":
+                    ingredient = nextStringOrNull(reader);
+                    break;
+                case "lat":
+                    lat = reader.nextDouble();
+                    break;
+                case "lng":
+                    lng = reader.nextDouble();
+                    break;
+                case "timestamp":
+                    timestamp = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (ingredient == null || Double.isNaN(lat) || Double.isNaN(lng)) return null;
+        return new PurchaseLocation(0, ingredient, lat, lng, timestamp);
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static class ImportedRecipe {
+        Recipe recipe;
+        final List<String> ingredientNames = new ArrayList<>();
+        final List<Boolean> purchased = new ArrayList<>();
+        final List<PurchaseLocation> locations = new ArrayList<>();
+    }
+}
@@ -68,13 +68,16 @@ public class RegisterActivity extends AppCompatActivity {
                 return;
             }
 
-            boolean success = userRepository.register(username, password);
-            if (success) {
-                Toast.makeText(this, "Registration successful. Please login.", Toast.LENGTH_SHORT).show();
-                finish(); // Return to LoginActivity
-            } else {
-                Toast.makeText(this, "Username already exists", Toast.LENGTH_SHORT).show();
-            }
+            binding.btnRegister.setEnabled(false);
+            userRepository.register(username, password, success -> {
+                binding.btnRegister.setEnabled(true);
+                if (success) {
+                    Toast.makeText(this, "Registration successful. Please login.", Toast.LENGTH_SHORT).show();
+                    finish(); // Return to LoginActivity
+                } else {
+                    Toast.makeText(this, "Username already exists", Toast.LENGTH_SHORT).show();
+                }
+            });
         });
     }
 }
@@ -0,0 +1,223 @@
+package com.buc.mealmate;
+
+import android.text.TextUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps outgoing SMS in the GSM-7 alphabet where possible and counts what they will cost.
+ * A single character outside GSM-7 switches the whole message to UCS-2, which drops a
+ * segment from 160 to 70 characters, so text is transliterated before it is queued.
+ */
+public final class SmsEncoder {
+
+    // 3GPP TS 23.038 default alphabet; extension characters cost two septets
+    private static final String GSM7_BASIC =
+            "@£$¥èéùìòÇ\nØø\rÅåΔ_ΦΓΛΩΠΨΣΘΞ\u001BÆæßÉ !\"#¤%&'()*+,-./0123456789:;<=>?"
+                    + "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§¿abcdefghijklmnopqrstuvwxyzäöñüà";
+    private static final String GSM7_EXTENSION = "^{}\\[~]|€\f";
+
+    public static final int GSM7_SINGLE = 160;
+    public static final int GSM7_MULTI = 153;
+    public static final int UCS2_SINGLE = 70;
+    public static final int UCS2_MULTI = 67;
+
+    // Longest message the packer builds; carriers get unreliable beyond a handful of parts
+    private static final int MAX_SEGMENTS_PER_MESSAGE = 6;
+    private static final String RECIPE_SEPARATOR = "\n\n";
+
+    private SmsEncoder() {
+    }
+
+    /** Segment count and encoding of one message. */
+    public static class Cost {
+        public final boolean gsm7;
+        public final int units; // Septets for GSM-7, UTF-16 code units for UCS-2
+        public final int segments;
+
+        Cost(boolean gsm7, int units, int segments) {
+            this.gsm7 = gsm7;
+            this.units = units;
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * Replaces characters outside GSM-7 with close equivalents: typographic punctuation
+     * with ASCII, accented letters with their base letter. Characters with no safe
+     * replacement (other scripts, emoji) are kept, and the message stays UCS-2.
+     */
+    public static String transliterate(String text) {
+        if (text == null) return "";
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isGsm7(c)) {
+                out.append(c);
+                continue;
+            }
+            String replacement = replacementFor(c);
+            if (replacement != null) {
+                out.append(replacement);
+                continue;
+            }
+            // Strip diacritics: "ê" -> "e", "ç" -> "c", only if what remains is GSM-7
+            String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}+", "");
+            if (base.length() == 1 && isGsm7(base.charAt(0))) out.append(base);
+            else out.append(c);
+        }
+        return out.toString();
+    }
+
+    private static String replacementFor(char c) {
+        switch (c) {
+            case '‘': case '’': case '‚': case '′': case '`': case '´':
+                return "'";
+            case '“': case '”': case '„': case '″': case '«': case '»':
+                return "\"";
+            case '‐': case '‑': case '‒': case '–': case '—': case '−':
+                return "-";
+            case '…':
+                return "...";
+            case '\u00A0': case '\u2007': case '\u202F': case '\t':
+                return " ";
+            case '•': case '·':
+                return "*";
+            case '½':
+                return "1/2";
+            case '¼':
+                return "1/4";
+            case '¾':
+                return "3/4";
+            case '°':
+                return " deg";
+            case '×':
+                return "x";
+            default:
+                return null;
+        }
+    }
+
+    public static boolean isGsm7(char c) {
+        return GSM7_BASIC.indexOf(c) >= 0 || GSM7_EXTENSION.indexOf(c) >= 0;
+    }
+
+    public static Cost cost(String text) {
+        boolean gsm7 = true;
+        int septets = 0;
+        for (int i = 0; i < text.length() && gsm7; i++) {
+            char c = text.charAt(i);
+            if (GSM7_BASIC.indexOf(c) >= 0) septets++;
+            else if (GSM7_EXTENSION.indexOf(c) >= 0) septets += 2;
+            else gsm7 = false;
+        }
+        if (!gsm7) {
+            int units = text.length();
+            int segments = units <= UCS2_SINGLE ? 1 : (units + UCS2_MULTI - 1) / UCS2_MULTI;
+            return new Cost(false, units, segments);
+        }
+        if (septets <= GSM7_SINGLE) return new Cost(true, septets, 1);
+
+        // An escape pair can't straddle two segments, so walk the text rather than divide
+        int segments = 1;
+        int used = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int size = GSM7_EXTENSION.indexOf(text.charAt(i)) >= 0 ? 2 : 1;
+            if (used + size > GSM7_MULTI) {
+                segments++;
+                used = 0;
+            }
+            used += size;
+        }
+        return new Cost(true, septets, segments);
+    }
+
+    /**
+     * Formats one recipe with whichever template costs fewer segments, after transliteration.
+     * The labelled template wins ties since it reads better.
+     */
+    public static String formatRecipe(String name, List<String> ingredients, String instructions) {
+        String full = transliterate(fullTemplate(name, ingredients, instructions));
+        String compact = transliterate(compactTemplate(name, ingredients, instructions));
+        return cost(compact).segments < cost(full).segments ? compact : full;
+    }
+
+    private static String fullTemplate(String name, List<String> ingredients, String instructions) {
+        StringBuilder message = new StringBuilder();
+        message.append("Recipe: ").append(name).append("\n");
+        if (!ingredients.isEmpty()) {
+            message.append("Ingredients: ").append(TextUtils.join(", ", ingredients)).append("\n");
+        }
+        if (instructions != null && !instructions.isEmpty()) {
+            message.append("Instructions: ").append(instructions);
+        }
+        return message.toString().trim();
+    }
+
+    private static String compactTemplate(String name, List<String> ingredients, String instructions) {
+        StringBuilder message = new StringBuilder(name == null ? "" : name);
+        if (!ingredients.isEmpty()) message.append(": ").append(TextUtils.join(",", ingredients));
+        if (instructions != null && !instructions.trim().isEmpty()) {
+            message.append("\n").append(instructions.trim().replaceAll("\\s+", " "));
+        }
+        return message.toString();
+    }
+
+    /**
+     * Packs formatted texts into as few segments as possible. Joining short texts fills
+     * the slack a lone message leaves in its last segment. GSM-7 and UCS-2 texts are
+     * packed separately, since one UCS-2 text would re-encode everything it is joined with.
+     * Uses first-fit decreasing, with each message capped at a few segments.
+     */
+    public static List<String> pack(List<String> texts) {
+        List<String> gsm = new ArrayList<>();
+        List<String> ucs2 = new ArrayList<>();
+        for (String text : texts) (cost(text).gsm7 ? gsm : ucs2).add(text);
+
+        List<String> messages = new ArrayList<>();
+        messages.addAll(packGroup(gsm, MAX_SEGMENTS_PER_MESSAGE * GSM7_MULTI));
+        messages.addAll(packGroup(ucs2, MAX_SEGMENTS_PER_MESSAGE * UCS2_MULTI));
+        return messages;
+    }
+
+    private static List<String> packGroup(List<String> texts, int capacity) {
+        List<String> sorted = new ArrayList<>(texts);
+        Collections.sort(sorted, (a, b) -> Integer.compare(cost(b).units, cost(a).units));
+
+        List<StringBuilder> bins = new ArrayList<>();
+        List<Integer> binUnits = new ArrayList<>();
+        int separatorUnits = RECIPE_SEPARATOR.length();
+        for (String text : sorted) {
+            int units = cost(text).units;
+            int target = -1;
+            for (int b = 0; b < bins.size() && target < 0; b++) {
+                // Units rule out most bins cheaply; escape pairs pushed past a segment boundary
+                // can still add a segment, so the cap is confirmed on the joined text
+                if (binUnits.get(b) + separatorUnits + units > capacity) continue;
+                String joined = bins.get(b) + RECIPE_SEPARATOR + text;
+                if (cost(joined).segments <= MAX_SEGMENTS_PER_MESSAGE) target = b;
+            }
+            if (target < 0) {
+                bins.add(new StringBuilder(text));
+                binUnits.add(units);
+            } else {
+                bins.get(target).append(RECIPE_SEPARATOR).append(text);
+                binUnits.set(target, binUnits.get(target) + separatorUnits + units);
+            }
+        }
+
+        List<String> messages = new ArrayList<>(bins.size());
+        for (StringBuilder bin : bins) messages.add(bin.toString());
+        return messages;
+    }
+
+    public static int totalSegments(List<String> messages) {
+        int total = 0;
+        for (String message : messages) total += cost(message).segments;
+        return total;
+    }
+}
@@ -2,10 +2,10 @@ package com.buc.mealmate;
 
 import android.Manifest;
 import android.app.Activity;
+import android.app.AlertDialog;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
-import android.telephony.SmsManager;
 import android.widget.Toast;
 
 import androidx.core.app.ActivityCompat;
@@ -27,15 +27,32 @@ public class SmsHelper {
             return;
         }
 
-        try {
-            // Try to send SMS directly
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-            Toast.makeText(activity, "SMS Sent", Toast.LENGTH_SHORT).show();
-        } catch (Exception e) {
-            // If direct sending fails (Android 10+ or no SIM), open default SMS app by itself
+        if (!activity.getPackageManager().hasSystemFeature(PackageManager.FEATURE_TELEPHONY)) {
+            // No radio to send from (tablets etc.), let the default SMS app handle it
             openSmsApp(activity, phoneNumber, message);
+            return;
         }
+
+        confirmAndQueue(activity, phoneNumber, message, "SMS queued");
+    }
+
+    /**
+     * Shows what the message will cost in SMS segments and queues it only once the user
+     * confirms. Sending, retries and delivery tracking are handled by the queue.
+     */
+    static void confirmAndQueue(Activity activity, String phoneNumber, String message, String queuedText) {
+        String encoded = SmsEncoder.transliterate(message);
+        SmsEncoder.Cost cost = SmsEncoder.cost(encoded);
+        new AlertDialog.Builder(activity)
+                .setTitle("Send SMS?")
+                .setMessage(cost.segments + (cost.segments == 1 ? " SMS segment" : " SMS segments")
+                        + (cost.gsm7 ? "" : "\nThe message contains characters that need Unicode SMS."))
+                .setPositiveButton("Send", (dialog, which) -> {
+                    SmsQueue.enqueue(activity, phoneNumber, encoded);
+                    Toast.makeText(activity, queuedText, Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
     }
 
     /**
@@ -0,0 +1,31 @@
+package com.buc.mealmate;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.os.Build;
+import android.telephony.SmsManager;
+
+import java.util.ArrayList;
+
+/** {@link SmsTransport} backed by the platform SmsManager. */
+public class SmsManagerTransport implements SmsTransport {
+
+    private final SmsManager smsManager;
+
+    public SmsManagerTransport(Context context) {
+        smsManager = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                ? context.getSystemService(SmsManager.class)
+                : SmsManager.getDefault();
+    }
+
+    @Override
+    public ArrayList<String> divideMessage(String text) {
+        return smsManager.divideMessage(text);
+    }
+
+    @Override
+    public void sendMultipart(String phoneNumber, ArrayList<String> parts,
+                              ArrayList<PendingIntent> sentIntents, ArrayList<PendingIntent> deliveryIntents) {
+        smsManager.sendMultipartTextMessage(phoneNumber, null, parts, sentIntents, deliveryIntents);
+    }
+}
@@ -0,0 +1,137 @@
+package com.buc.mealmate;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.OutboundSms;
+import com.buc.mealmate.data.OutboundSmsDao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent outbound SMS queue. Messages are written to the outbound_sms table and sent
+ * by {@link SmsSendWorker}; per-part results come back through {@link SmsStatusReceiver}.
+ * Queued messages survive process death, since both the table and the work request do.
+ */
+public final class SmsQueue {
+
+    // Immediate drains and delayed wake-ups are kept apart, so a new message never waits
+    // behind a backoff or rate-limit delay meant for another one
+    private static final String DRAIN_WORK_NAME = "outbound_sms";
+    private static final String WAKE_WORK_NAME = "outbound_sms_wake";
+
+    static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 30_000;
+    private static final long MAX_BACKOFF_MS = 30 * 60_000;
+
+    private static volatile SmsTransport transport;
+    private static volatile OutboundSmsDao outbox;
+
+    private SmsQueue() {
+    }
+
+    /** Replaces the platform transport, e.g. with a fake in tests. Pass null to restore it. */
+    public static void setTransport(SmsTransport replacement) {
+        transport = replacement;
+    }
+
+    static SmsTransport getTransport(Context context) {
+        SmsTransport current = transport;
+        return current != null ? current : new SmsManagerTransport(context.getApplicationContext());
+    }
+
+    /** Replaces the app database's outbox, e.g. with an in-memory one in tests. Pass null to restore it. */
+    public static void setOutbox(OutboundSmsDao replacement) {
+        outbox = replacement;
+    }
+
+    static OutboundSmsDao getOutbox(Context context) {
+        OutboundSmsDao current = outbox;
+        return current != null ? current : AppDatabase.getInstance(context).outboundSmsDao();
+    }
+
+    public static void enqueue(Context context, String phoneNumber, String body) {
+        List<String> bodies = new ArrayList<>();
+        bodies.add(body);
+        enqueue(context, phoneNumber, bodies);
+    }
+
+    // Each body becomes its own message; all of them are queued in one insert
+    public static void enqueue(Context context, String phoneNumber, List<String> bodies) {
+        Context appContext = context.getApplicationContext();
+        AppDatabase.databaseExecutor.execute(() -> {
+            long now = System.currentTimeMillis();
+            List<OutboundSms> messages = new ArrayList<>(bodies.size());
+            for (String body : bodies) messages.add(new OutboundSms(phoneNumber, body, now));
+            getOutbox(appContext).insertAll(messages);
+            drain(appContext);
+        });
+    }
+
+    // Messages that used up their retries; the count only goes up
+    public static LiveData<Integer> observeFailedCount(Context context) {
+        return getOutbox(context).observeFailedCount();
+    }
+
+    // Sends whatever is due now. A drain that is still waiting to start covers these messages
+    // too; one already running may have read the queue before they were inserted, so a single
+    // follow-up run is chained behind it
+    static void drain(Context context) {
+        WorkManager workManager = WorkManager.getInstance(context);
+        ExistingWorkPolicy policy = ExistingWorkPolicy.KEEP;
+        try {
+            for (WorkInfo info : workManager.getWorkInfosForUniqueWork(DRAIN_WORK_NAME).get()) {
+                WorkInfo.State state = info.getState();
+                if (state == WorkInfo.State.ENQUEUED || state == WorkInfo.State.BLOCKED) {
+                    policy = ExistingWorkPolicy.KEEP;
+                    break;
+                }
+                if (state == WorkInfo.State.RUNNING) policy = ExistingWorkPolicy.APPEND_OR_REPLACE;
+            }
+        } catch (ExecutionException e) {
+            // Unknown state: keep whatever is there, the next wake-up picks the messages up
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workManager.enqueueUniqueWork(DRAIN_WORK_NAME, policy,
+                new OneTimeWorkRequest.Builder(SmsSendWorker.class).build());
+    }
+
+    // One pending wake-up at a time; the worker recomputes the next due time on every run,
+    // so the latest request simply replaces the previous one
+    static void schedule(Context context, long delayMs) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SmsSendWorker.class)
+                .setInitialDelay(Math.max(0, delayMs), TimeUnit.MILLISECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WAKE_WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    // Exponential backoff: 30 s, 1 min, 2 min, ... capped at 30 min
+    static long backoffMs(int attempts) {
+        long delay = BASE_BACKOFF_MS << Math.min(Math.max(0, attempts - 1), 16);
+        return Math.min(delay, MAX_BACKOFF_MS);
+    }
+
+    // Called by the status receiver when an attempt failed after the worker handed it over.
+    // The wake-up goes to the earliest due message, which a replaced wake-up may have been for
+    static void onAttemptFailed(Context context, OutboundSmsDao dao, int id, int attempt, int error) {
+        if (!recordFailure(dao, id, attempt, error)) return;
+        Long next = dao.getNextAttemptTime();
+        if (next != null) schedule(context, next - System.currentTimeMillis());
+    }
+
+    // Requeues with backoff without scheduling; the send worker reschedules itself when it finishes
+    static boolean recordFailure(OutboundSmsDao dao, int id, int attempt, int error) {
+        return dao.markAttemptFailed(id, attempt, error, System.currentTimeMillis() + backoffMs(attempt), MAX_ATTEMPTS);
+    }
+}
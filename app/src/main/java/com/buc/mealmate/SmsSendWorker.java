@@ -0,0 +1,124 @@
+package com.buc.mealmate;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.telephony.SmsManager;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.buc.mealmate.data.OutboundSms;
+import com.buc.mealmate.data.OutboundSmsDao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains due messages from the outbound_sms table, one at a time, under a rate limit.
+ * It only hands messages to the radio; the outcome of each part arrives later in
+ * {@link SmsStatusReceiver}.
+ */
+public class SmsSendWorker extends Worker {
+
+    // Spacing between messages, and a cap on attempts per rolling window
+    private static final long MIN_SEND_INTERVAL_MS = 2_000;
+    private static final long RATE_WINDOW_MS = 60_000;
+    private static final int MAX_SENDS_PER_WINDOW = 15;
+
+    // A message still "sending" after this long never got its sent broadcasts back
+    private static final long SEND_TIMEOUT_MS = 10 * 60_000;
+
+    private final OutboundSmsDao dao;
+
+    public SmsSendWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+        dao = SmsQueue.getOutbox(context);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SmsTransport transport = SmsQueue.getTransport(context);
+
+        List<OutboundSms> stuck = dao.getStuckSending(System.currentTimeMillis() - SEND_TIMEOUT_MS);
+        for (OutboundSms message : stuck) {
+            SmsQueue.recordFailure(dao, message.id, message.attempts, SmsManager.RESULT_ERROR_GENERIC_FAILURE);
+        }
+
+        while (!isStopped()) {
+            long now = System.currentTimeMillis();
+            if (dao.countAttemptsSince(now - RATE_WINDOW_MS) >= MAX_SENDS_PER_WINDOW) {
+                Long oldest = dao.getOldestAttemptSince(now - RATE_WINDOW_MS);
+                SmsQueue.schedule(context, oldest == null ? RATE_WINDOW_MS : oldest + RATE_WINDOW_MS - now);
+                return Result.success();
+            }
+
+            OutboundSms message = dao.getNextDue(now);
+            if (message == null) {
+                Long next = dao.getNextAttemptTime();
+                if (next != null) SmsQueue.schedule(context, next - now);
+                return Result.success();
+            }
+
+            send(context, transport, message, now);
+
+            try {
+                Thread.sleep(MIN_SEND_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // Stopped early: whatever is left is picked up by the next run
+        SmsQueue.schedule(context, MIN_SEND_INTERVAL_MS);
+        return Result.success();
+    }
+
+    private void send(Context context, SmsTransport transport, OutboundSms message, long now) {
+        ArrayList<String> parts = transport.divideMessage(message.body == null ? "" : message.body);
+        if (parts.isEmpty() || parts.size() > OutboundSms.MAX_PARTS) {
+            // Can never go out as one message, so fail it without retrying
+            if (dao.markSending(message.id, Math.max(1, Math.min(parts.size(), OutboundSms.MAX_PARTS)), now)) {
+                dao.markAttemptFailed(message.id, message.attempts + 1, SmsManager.RESULT_ERROR_GENERIC_FAILURE, now, 0);
+            }
+            return;
+        }
+
+        int attempt = message.attempts + 1;
+        // A drain and a wake-up can run at once; only the one that claims the row sends it
+        if (!dao.markSending(message.id, parts.size(), now)) return;
+
+        ArrayList<PendingIntent> sentIntents = new ArrayList<>(parts.size());
+        ArrayList<PendingIntent> deliveryIntents = new ArrayList<>(parts.size());
+        for (int part = 0; part < parts.size(); part++) {
+            sentIntents.add(statusIntent(context, SmsStatusReceiver.ACTION_SENT, message.id, attempt, part));
+            deliveryIntents.add(statusIntent(context, SmsStatusReceiver.ACTION_DELIVERED, message.id, attempt, part));
+        }
+
+        try {
+            transport.sendMultipart(message.phone, parts, sentIntents, deliveryIntents);
+        } catch (RuntimeException e) {
+            // Bad number, no SIM, missing permission: nothing was handed to the radio
+            SmsQueue.recordFailure(dao, message.id, attempt, SmsManager.RESULT_ERROR_GENERIC_FAILURE);
+        }
+    }
+
+    // The data uri keeps every (message, attempt, part, action) intent distinct
+    private static PendingIntent statusIntent(Context context, String action, int id, int attempt, int part) {
+        Intent intent = new Intent(context, SmsStatusReceiver.class)
+                .setAction(action)
+                .setData(Uri.parse("mealmate-sms://" + id + "/" + attempt + "/" + part))
+                .putExtra(SmsStatusReceiver.EXTRA_ID, id)
+                .putExtra(SmsStatusReceiver.EXTRA_ATTEMPT, attempt)
+                .putExtra(SmsStatusReceiver.EXTRA_PART, part);
+        // The platform fills in the delivery report pdu, so the intent has to stay mutable
+        int flags = PendingIntent.FLAG_ONE_SHOT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) flags |= PendingIntent.FLAG_MUTABLE;
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+}
@@ -0,0 +1,61 @@
+package com.buc.mealmate;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.telephony.SmsMessage;
+
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.OutboundSmsDao;
+
+/** Receives per-part sent results and delivery reports for messages sent by {@link SmsSendWorker}. */
+public class SmsStatusReceiver extends BroadcastReceiver {
+
+    static final String ACTION_SENT = "com.buc.mealmate.SMS_SENT";
+    static final String ACTION_DELIVERED = "com.buc.mealmate.SMS_DELIVERED";
+    static final String EXTRA_ID = "sms_id";
+    static final String EXTRA_ATTEMPT = "sms_attempt";
+    static final String EXTRA_PART = "sms_part";
+
+    // TP-Status values below this mean the part reached the handset
+    private static final int STATUS_DELIVERY_PENDING = 0x20;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        int id = intent.getIntExtra(EXTRA_ID, -1);
+        int attempt = intent.getIntExtra(EXTRA_ATTEMPT, -1);
+        int part = intent.getIntExtra(EXTRA_PART, -1);
+        if (id < 0 || attempt < 0 || part < 0) return;
+
+        String action = intent.getAction();
+        int resultCode = getResultCode();
+        Context appContext = context.getApplicationContext();
+        OutboundSmsDao dao = SmsQueue.getOutbox(appContext);
+
+        // Room refuses the main thread; keep the broadcast alive until the row is updated
+        PendingResult pending = goAsync();
+        AppDatabase.databaseExecutor.execute(() -> {
+            try {
+                if (ACTION_SENT.equals(action)) {
+                    if (resultCode == Activity.RESULT_OK) {
+                        dao.markPartSent(id, attempt, part);
+                    } else {
+                        SmsQueue.onAttemptFailed(appContext, dao, id, attempt, resultCode);
+                    }
+                } else if (ACTION_DELIVERED.equals(action) && isDelivered(intent)) {
+                    dao.markPartDelivered(id, attempt, part);
+                }
+            } finally {
+                pending.finish();
+            }
+        });
+    }
+
+    private static boolean isDelivered(Intent intent) {
+        byte[] pdu = intent.getByteArrayExtra("pdu");
+        if (pdu == null) return false;
+        SmsMessage report = SmsMessage.createFromPdu(pdu, intent.getStringExtra("format"));
+        return report != null && report.getStatus() < STATUS_DELIVERY_PENDING;
+    }
+}
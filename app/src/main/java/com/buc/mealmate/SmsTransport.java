@@ -0,0 +1,21 @@
+package com.buc.mealmate;
+
+import android.app.PendingIntent;
+
+import java.util.ArrayList;
+
+/**
+ * The radio side of {@link SmsQueue}. The queue only talks to this interface, so tests
+ * can install a fake with {@link SmsQueue#setTransport} instead of sending real messages.
+ */
+public interface SmsTransport {
+
+    ArrayList<String> divideMessage(String text);
+
+    /**
+     * Sends one message as a multipart SMS. Each part's intents fire with that part's
+     * sent result and delivery report.
+     */
+    void sendMultipart(String phoneNumber, ArrayList<String> parts,
+                       ArrayList<PendingIntent> sentIntents, ArrayList<PendingIntent> deliveryIntents);
+}
@@ -0,0 +1,121 @@
+package com.buc.mealmate;
+
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.Geohash;
+import com.buc.mealmate.data.PendingPoint;
+import com.buc.mealmate.data.RecipeDao;
+import com.buc.mealmate.data.Store;
+import com.buc.mealmate.data.StoreDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Folds purchase points into stores, one point at a time. A point joins the nearest store of the
+ * same account within {@link #STORE_RADIUS_M} of it and nudges that store's centroid, otherwise
+ * it starts a new store. Its own coordinates are then dropped, so what is kept per shop is one
+ * store row plus a store id on each purchase. Only unclustered points are read, so a pass costs
+ * as much as what arrived since the last one. Stores that points moved or were deleted out of
+ * are recounted with {@link #recount} and deleted once empty. Call off the main thread.
+ */
+public class StoreClusterer {
+
+    // Same shop: GPS scatter inside a building plus a car park
+    static final double STORE_RADIUS_M = 60;
+
+    // ~150 m cells; falls back to coarser ones where longitude cells get narrower than the radius
+    private static final int SEARCH_PRECISION = 7;
+    private static final int BATCH_SIZE = 200;
+
+    // Two passes at once could each open a store for the same shop
+    private static final Object LOCK = new Object();
+
+    private final AppDatabase db;
+    private final StoreDao dao;
+
+    public StoreClusterer(AppDatabase db) {
+        this.db = db;
+        this.dao = db.storeDao();
+    }
+
+    /** Clusters every point that has no store yet; returns how many were placed. */
+    public int clusterPending() {
+        synchronized (LOCK) {
+            int placed = 0;
+            int batch;
+            do {
+                // Read inside the transaction, so a point moved meanwhile isn't assigned by its old fix
+                batch = db.runInTransaction(() -> {
+                    List<PendingPoint> points = dao.getUnclustered(BATCH_SIZE);
+                    for (PendingPoint point : points) place(point);
+                    return points.size();
+                });
+                placed += batch;
+            } while (batch == BATCH_SIZE);
+            return placed;
+        }
+    }
+
+    /**
+     * Brings these stores' point counts back in line after points were moved out of them or
+     * deleted, and deletes the ones left empty. Their centroids stay where they are: the points
+     * that left no longer have coordinates of their own to take back out. Call inside the
+     * transaction that moved or deleted the points, after the write, with the store ids read
+     * before it.
+     */
+    public void recount(Collection<Integer> storeIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(storeIds));
+        for (int i = 0; i < ids.size(); i += RecipeDao.MAX_BATCH_IDS) {
+            List<Integer> chunk = ids.subList(i, Math.min(ids.size(), i + RecipeDao.MAX_BATCH_IDS));
+            dao.recountChunk(chunk);
+            dao.deleteEmptyChunk(chunk);
+        }
+    }
+
+    private void place(PendingPoint point) {
+        Store store = nearestStore(point.userId, point.lat, point.lng);
+        if (store == null) {
+            store = new Store();
+            store.userId = point.userId;
+            store.lat = point.lat;
+            store.lng = point.lng;
+            store.pointCount = 1;
+            store.geohash = Geohash.encode(point.lat, point.lng, Store.GEOHASH_PRECISION);
+            store.id = (int) dao.insert(store);
+            dao.rename(store.id, "Store #" + store.id);
+        } else {
+            // Running mean, so the centroid settles on the shop rather than the first fix
+            int count = store.pointCount + 1;
+            double lat = store.lat + (point.lat - store.lat) / count;
+            double lng = store.lng + (point.lng - store.lng) / count;
+            dao.moveCentroid(store.id, lat, lng, Geohash.encode(lat, lng, Store.GEOHASH_PRECISION), count);
+        }
+        dao.assign(point.id, store.id);
+    }
+
+    // Only this account's stores are candidates; other accounts' shops never shift its centroids
+    private Store nearestStore(Integer userId, double lat, double lng) {
+        int precision = SEARCH_PRECISION;
+        // The 3x3 block must reach at least the radius past the point in every direction
+        while (precision > 1 && Math.min(Geohash.cellHeight(precision) * NearbyPurchaseFinder.METRES_PER_DEGREE,
+                Geohash.cellWidth(precision) * NearbyPurchaseFinder.METRES_PER_DEGREE
+                        * Math.cos(Math.toRadians(lat))) < STORE_RADIUS_M) {
+            precision--;
+        }
+
+        Store nearest = null;
+        double nearestMetres = STORE_RADIUS_M;
+        for (String cell : NearbyPurchaseFinder.neighbourhood(lat, lng, precision)) {
+            for (Store store : dao.getInCell(userId, cell, Geohash.rangeEnd(cell))) {
+                double metres = NearbyPurchaseFinder.distanceMetres(lat, lng, store.lat, store.lng);
+                if (metres <= nearestMetres) {
+                    nearest = store;
+                    nearestMetres = metres;
+                }
+            }
+        }
+        return nearest;
+    }
+}
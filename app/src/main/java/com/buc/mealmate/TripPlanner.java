@@ -0,0 +1,224 @@
+package com.buc.mealmate;
+
+import com.buc.mealmate.data.StoreStock;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Plans a shopping trip over remembered stores. A greedy set cover picks few stops that
+ * between them stock every missing ingredient, then the stops are ordered from the start
+ * point with nearest neighbour and improved with 2-opt. Both are polynomial and small:
+ * hundreds of ingredients over dozens of stores plan in a few milliseconds.
+ */
+public class TripPlanner {
+
+    public static class Stop {
+        public final String storeName;
+        public final double lat;
+        public final double lng;
+        public final List<String> ingredients = new ArrayList<>();
+        // From the previous stop, or from the start point for the first one; 0 without a start
+        public double legMetres;
+
+        Stop(String storeName, double lat, double lng) {
+            this.storeName = storeName;
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+
+    public static class Plan {
+        public final List<Stop> stops = new ArrayList<>();
+        // Missing ingredients never bought at any known store
+        public final List<String> unplaced = new ArrayList<>();
+        public double totalMetres;
+    }
+
+    private TripPlanner() {
+    }
+
+    /**
+     * @param missing  ingredient names still to buy
+     * @param stock    (store, ingredient) pairs from past purchases
+     * @param startLat start point, or NaN to start at the first chosen stop
+     */
+    public static Plan plan(List<String> missing, List<StoreStock> stock, double startLat, double startLng) {
+        Plan plan = new Plan();
+
+        // Ingredients become bit positions, matched case-insensitively
+        Map<String, Integer> ingredientBits = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (String name : missing) {
+            if (name == null) continue;
+            String key = name.trim().toLowerCase(Locale.ROOT);
+            if (ingredientBits.containsKey(key)) continue;
+            ingredientBits.put(key, names.size());
+            names.add(name.trim());
+        }
+
+        // One coverage set per store
+        Map<Integer, Integer> storeIndex = new LinkedHashMap<>();
+        List<StoreStock> stores = new ArrayList<>();
+        List<BitSet> coverage = new ArrayList<>();
+        BitSet coverable = new BitSet(names.size());
+        for (StoreStock row : stock) {
+            if (row.ingredient == null) continue;
+            Integer bit = ingredientBits.get(row.ingredient.trim().toLowerCase(Locale.ROOT));
+            if (bit == null) continue;
+            Integer index = storeIndex.get(row.storeId);
+            if (index == null) {
+                index = stores.size();
+                storeIndex.put(row.storeId, index);
+                stores.add(row);
+                coverage.add(new BitSet(names.size()));
+            }
+            coverage.get(index).set(bit);
+            coverable.set(bit);
+        }
+
+        for (int bit = 0; bit < names.size(); bit++) {
+            if (!coverable.get(bit)) plan.unplaced.add(names.get(bit));
+        }
+        if (coverable.isEmpty()) return plan;
+
+        List<Integer> chosen = cover(stores, coverage, coverable, startLat, startLng);
+        boolean hasStart = !Double.isNaN(startLat) && !Double.isNaN(startLng);
+        int[] route = order(stores, chosen, hasStart, startLat, startLng);
+
+        // Each ingredient goes to the first stop on the route that has it
+        BitSet assigned = new BitSet(names.size());
+        for (int index : route) {
+            StoreStock store = stores.get(index);
+            BitSet items = (BitSet) coverage.get(index).clone();
+            items.andNot(assigned);
+            // Ordering can leave an early pick with nothing left to buy
+            if (items.isEmpty()) continue;
+            assigned.or(items);
+            Stop stop = new Stop(store.storeName, store.lat, store.lng);
+            for (int bit = items.nextSetBit(0); bit >= 0; bit = items.nextSetBit(bit + 1)) {
+                stop.ingredients.add(names.get(bit));
+            }
+            plan.stops.add(stop);
+        }
+
+        double prevLat = startLat, prevLng = startLng;
+        for (int i = 0; i < plan.stops.size(); i++) {
+            Stop stop = plan.stops.get(i);
+            if (i > 0 || hasStart) {
+                stop.legMetres = NearbyPurchaseFinder.distanceMetres(prevLat, prevLng, stop.lat, stop.lng);
+            }
+            plan.totalMetres += stop.legMetres;
+            prevLat = stop.lat;
+            prevLng = stop.lng;
+        }
+        return plan;
+    }
+
+    // Greedy set cover: repeatedly take the store adding the most uncovered ingredients,
+    // ties going to the one nearer the previous pick
+    private static List<Integer> cover(List<StoreStock> stores, List<BitSet> coverage, BitSet coverable,
+                                       double startLat, double startLng) {
+        List<Integer> chosen = new ArrayList<>();
+        BitSet remaining = (BitSet) coverable.clone();
+        double fromLat = startLat, fromLng = startLng;
+        BitSet gain = new BitSet();
+        while (!remaining.isEmpty()) {
+            int best = -1;
+            int bestGain = 0;
+            double bestMetres = Double.MAX_VALUE;
+            for (int i = 0; i < stores.size(); i++) {
+                gain.clear();
+                gain.or(coverage.get(i));
+                gain.and(remaining);
+                int count = gain.cardinality();
+                if (count == 0 || count < bestGain) continue;
+                double metres = Double.isNaN(fromLat) ? 0
+                        : NearbyPurchaseFinder.distanceMetres(fromLat, fromLng, stores.get(i).lat, stores.get(i).lng);
+                if (count > bestGain || metres < bestMetres) {
+                    best = i;
+                    bestGain = count;
+                    bestMetres = metres;
+                }
+            }
+            chosen.add(best);
+            remaining.andNot(coverage.get(best));
+            fromLat = stores.get(best).lat;
+            fromLng = stores.get(best).lng;
+        }
+        return chosen;
+    }
+
+    // Open path through the chosen stops: nearest neighbour, then 2-opt until no reversal shortens it
+    private static int[] order(List<StoreStock> stores, List<Integer> chosen, boolean hasStart,
+                               double startLat, double startLng) {
+        int n = chosen.size();
+        // Node 0 is the start point, or the first chosen stop when there is none
+        int offset = hasStart ? 1 : 0;
+        int nodes = n + offset;
+        double[] lat = new double[nodes];
+        double[] lng = new double[nodes];
+        if (hasStart) {
+            lat[0] = startLat;
+            lng[0] = startLng;
+        }
+        for (int i = 0; i < n; i++) {
+            lat[i + offset] = stores.get(chosen.get(i)).lat;
+            lng[i + offset] = stores.get(chosen.get(i)).lng;
+        }
+        double[][] dist = new double[nodes][nodes];
+        for (int i = 0; i < nodes; i++) {
+            for (int j = i + 1; j < nodes; j++) {
+                dist[i][j] = dist[j][i] = NearbyPurchaseFinder.distanceMetres(lat[i], lng[i], lat[j], lng[j]);
+            }
+        }
+
+        int[] path = new int[nodes];
+        boolean[] visited = new boolean[nodes];
+        visited[0] = true;
+        for (int i = 1; i < nodes; i++) {
+            int from = path[i - 1];
+            int next = -1;
+            for (int j = 0; j < nodes; j++) {
+                if (!visited[j] && (next == -1 || dist[from][j] < dist[from][next])) next = j;
+            }
+            path[i] = next;
+            visited[next] = true;
+        }
+
+        // Reversing path[i..j] swaps edges (i-1, i) and (j, j+1); the last stop has no outgoing edge
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 1; i < nodes - 1; i++) {
+                for (int j = i + 1; j < nodes; j++) {
+                    int a = path[i - 1], b = path[i], c = path[j];
+                    double before = dist[a][b];
+                    double after = dist[a][c];
+                    if (j + 1 < nodes) {
+                        int d = path[j + 1];
+                        before += dist[c][d];
+                        after += dist[b][d];
+                    }
+                    if (after < before - 1e-6) {
+                        for (int lo = i, hi = j; lo < hi; lo++, hi--) {
+                            int t = path[lo];
+                            path[lo] = path[hi];
+                            path[hi] = t;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+        }
+
+        int[] route = new int[n];
+        for (int i = 0; i < n; i++) route[i] = chosen.get(path[i + offset] - offset);
+        return route;
+    }
+}
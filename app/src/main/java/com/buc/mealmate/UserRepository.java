@@ -2,27 +2,124 @@ package com.buc.mealmate;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 
+import com.buc.mealmate.data.AppDatabase;
+import com.buc.mealmate.data.RecipeDao;
+import com.buc.mealmate.data.User;
+import com.buc.mealmate.data.UserDao;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Accounts live in the Room users table with PBKDF2 hashes. Accounts from the old
+ * MealMateUsers preferences are moved over the first time they log in, or by
+ * {@link #migrateLegacyUsers()} for those that never do.
+ */
 public class UserRepository {
-    private static final String PREFS_NAME = "MealMateUsers";
-    private final SharedPreferences sharedPreferences;
+    private static final String LEGACY_PREFS_NAME = "MealMateUsers";
+
+    // Hashing is deliberately slow, so it gets its own thread instead of holding up database work
+    private static final ExecutorService authExecutor = Executors.newSingleThreadExecutor();
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private final UserDao userDao;
+    private final RecipeDao recipeDao;
+    private final Context context;
+    private final SharedPreferences legacyPrefs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     public UserRepository(Context context) {
-        sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.context = context.getApplicationContext();
+        AppDatabase db = AppDatabase.getInstance(context);
+        userDao = db.userDao();
+        recipeDao = db.recipeDao();
+        legacyPrefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
     }
 
-    public boolean register(String username, String password) {
-        if (sharedPreferences.contains(username)) {
-            return false; // user exists
+    // Hashes every account still in the old preferences into Room, then deletes the file so no
+    // plain password is left on disk. Queued behind logins, which would migrate the same entries
+    public void migrateLegacyUsers() {
+        authExecutor.execute(this::migrateLegacyUsersBlocking);
+    }
+
+    // Accounts from the old database, username -> plain password. Hashed on the auth thread like
+    // every other password, so database work isn't held up; names already taken are skipped
+    Future<?> importAccounts(Map<String, String> accounts) {
+        return authExecutor.submit(() -> {
+            for (Map.Entry<String, String> account : accounts.entrySet()) {
+                registerBlocking(account.getKey(), account.getValue());
+            }
+        });
+    }
+
+    // Result is false if the username is taken
+    public void register(String username, String password, Callback<Boolean> callback) {
+        authExecutor.execute(() -> {
+            boolean success = registerBlocking(username, password);
+            mainHandler.post(() -> callback.onResult(success));
+        });
+    }
+
+    // Result is the account id, or null if the credentials don't match
+    public void login(String username, String password, Callback<Integer> callback) {
+        authExecutor.execute(() -> {
+            Integer userId = loginBlocking(username, password);
+            if (userId != null && recipeDao.claimUnowned(userId) > 0) PantryIndex.invalidate();
+            mainHandler.post(() -> callback.onResult(userId));
+        });
+    }
+
+    // For sessions saved before accounts had ids; null if the name isn't in the users table
+    Integer findUserIdBlocking(String username) {
+        User user = userDao.findByUsername(username);
+        return user == null ? null : user.id;
+    }
+
+    private boolean registerBlocking(String username, String password) {
+        if (legacyPrefs.contains(username)) return false; // Not migrated yet, but taken
+        return userDao.insert(new User(username, PasswordHasher.hash(password))) != -1;
+    }
+
+    private Integer loginBlocking(String username, String password) {
+        User user = userDao.findByUsername(username);
+        if (user == null) return migrateLegacyUser(username, password);
+        if (!PasswordHasher.verify(password, user.passwordHash)) return null;
+        if (PasswordHasher.needsRehash(user.passwordHash)) {
+            userDao.updatePasswordHash(user.id, PasswordHasher.hash(password));
         }
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(username, password);
-        editor.apply();
-        return true;
+        return user.id;
     }
 
-    public boolean login(String username, String password) {
-        String storedPassword = sharedPreferences.getString(username, null);
-        return storedPassword != null && storedPassword.equals(password);
+    // The old store kept plain passwords; on a match, hash into Room and drop the old entry
+    private Integer migrateLegacyUser(String username, String password) {
+        String storedPassword = legacyPrefs.getString(username, null);
+        if (storedPassword == null || !storedPassword.equals(password)) return null;
+        long id = userDao.insert(new User(username, PasswordHasher.hash(password)));
+        if (id == -1) return null;
+        legacyPrefs.edit().remove(username).apply();
+        return (int) id;
+    }
+
+    private void migrateLegacyUsersBlocking() {
+        Map<String, ?> entries = legacyPrefs.getAll();
+        if (entries.isEmpty()) return;
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            if (!(entry.getValue() instanceof String)) continue;
+            // A Room account of the same name already owns it; the old entry just goes
+            if (userDao.findByUsername(entry.getKey()) == null) {
+                userDao.insert(new User(entry.getKey(), PasswordHasher.hash((String) entry.getValue())));
+            }
+        }
+        // Cleared first: the cached instance would otherwise keep the passwords in memory
+        legacyPrefs.edit().clear().commit();
+        context.deleteSharedPreferences(LEGACY_PREFS_NAME);
     }
 }
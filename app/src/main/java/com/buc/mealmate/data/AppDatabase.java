@@ -2,21 +2,51 @@ package com.buc.mealmate.data;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {Recipe.class}, version = 4, exportSchema = false)
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Database(entities = {Recipe.class, RecipeIngredient.class, RecipeFts.class, PurchaseLocation.class,
+        OutboundSms.class, User.class, Store.class, ImportProgress.class}, version = 16, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     private static AppDatabase INSTANCE;
 
+    // Shared background executor for all database work; Room rejects queries on the main thread
+    public static final ExecutorService databaseExecutor = Executors.newFixedThreadPool(2);
+
     public abstract RecipeDao recipeDao();
 
+    public abstract PurchaseLocationDao purchaseLocationDao();
+
+    public abstract OutboundSmsDao outboundSmsDao();
+
+    public abstract UserDao userDao();
+
+    public abstract StoreDao storeDao();
+
+    public abstract ImportProgressDao importProgressDao();
+
     public static synchronized AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
             INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                             AppDatabase.class, "mealmate_db")
-                    .allowMainThreadQueries() // For simplicity; in real apps use async
+                    .addMigrations(Migrations.MIGRATION_4_5, Migrations.MIGRATION_5_6,
+                            Migrations.MIGRATION_6_7, Migrations.MIGRATION_7_8,
+                            Migrations.MIGRATION_8_9, Migrations.MIGRATION_9_10,
+                            Migrations.MIGRATION_10_11, Migrations.MIGRATION_11_12,
+                            Migrations.MIGRATION_12_13, Migrations.MIGRATION_13_14,
+                            Migrations.MIGRATION_14_15, Migrations.MIGRATION_15_16)
+                    .addCallback(new Callback() {
+                        @Override
+                        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                            DatabaseTriggers.createAll(db);
+                        }
+                    })
                     .build();
         }
         return INSTANCE;
@@ -0,0 +1,84 @@
+package com.buc.mealmate.data;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQL triggers Room can't declare through annotations. Each group is created by the
+ * migration that introduced it and by {@link AppDatabase}'s onCreate callback on fresh installs.
+ */
+public final class DatabaseTriggers {
+
+    private DatabaseTriggers() {
+    }
+
+    // Keep recipes.ingredient_count / missing_count in step with recipe_ingredient on every write path
+    static final String[] INGREDIENT_COUNTS = {
+            "CREATE TRIGGER IF NOT EXISTS `recipe_ingredient_counts_insert` AFTER INSERT ON `recipe_ingredient` BEGIN "
+                    + "UPDATE recipes SET ingredient_count = ingredient_count + 1, "
+                    + "missing_count = missing_count + (NEW.purchased = 0) "
+                    + "WHERE id = NEW.recipe_id; END",
+            "CREATE TRIGGER IF NOT EXISTS `recipe_ingredient_counts_delete` AFTER DELETE ON `recipe_ingredient` BEGIN "
+                    + "UPDATE recipes SET ingredient_count = ingredient_count - 1, "
+                    + "missing_count = missing_count - (OLD.purchased = 0) "
+                    + "WHERE id = OLD.recipe_id; END",
+            "CREATE TRIGGER IF NOT EXISTS `recipe_ingredient_counts_update` AFTER UPDATE OF purchased ON `recipe_ingredient` "
+                    + "WHEN OLD.purchased != NEW.purchased BEGIN "
+                    + "UPDATE recipes SET missing_count = missing_count + (NEW.purchased = 0) - (OLD.purchased = 0) "
+                    + "WHERE id = NEW.recipe_id; END"
+    };
+
+    // Mirror recipes and their ingredient names into recipes_fts
+    static final String[] RECIPE_FTS = {
+            "CREATE TRIGGER IF NOT EXISTS `recipes_fts_insert` AFTER INSERT ON `recipes` BEGIN "
+                    + "INSERT INTO recipes_fts(rowid, name, ingredients, instructions) "
+                    + "VALUES (NEW.id, NEW.name, '', NEW.instructions); END",
+            "CREATE TRIGGER IF NOT EXISTS `recipes_fts_update` AFTER UPDATE OF name, instructions ON `recipes` BEGIN "
+                    + "UPDATE recipes_fts SET name = NEW.name, instructions = NEW.instructions "
+                    + "WHERE rowid = NEW.id; END",
+            "CREATE TRIGGER IF NOT EXISTS `recipes_fts_delete` AFTER DELETE ON `recipes` BEGIN "
+                    + "DELETE FROM recipes_fts WHERE rowid = OLD.id; END",
+            "CREATE TRIGGER IF NOT EXISTS `recipe_ingredient_fts_insert` AFTER INSERT ON `recipe_ingredient` BEGIN "
+                    + "UPDATE recipes_fts SET ingredients = (SELECT group_concat(name, ' ') FROM recipe_ingredient "
+                    + "WHERE recipe_id = NEW.recipe_id) WHERE rowid = NEW.recipe_id; END",
+            "CREATE TRIGGER IF NOT EXISTS `recipe_ingredient_fts_delete` AFTER DELETE ON `recipe_ingredient` BEGIN "
+                    + "UPDATE recipes_fts SET ingredients = (SELECT group_concat(name, ' ') FROM recipe_ingredient "
+                    + "WHERE recipe_id = OLD.recipe_id) WHERE rowid = OLD.recipe_id; END",
+            "CREATE TRIGGER IF NOT EXISTS `recipe_ingredient_fts_update` AFTER UPDATE OF name ON `recipe_ingredient` BEGIN "
+                    + "UPDATE recipes_fts SET ingredients = (SELECT group_concat(name, ' ') FROM recipe_ingredient "
+                    + "WHERE recipe_id = NEW.recipe_id) WHERE rowid = NEW.recipe_id; END"
+    };
+
+    static void createAll(SupportSQLiteDatabase db) {
+        create(db, INGREDIENT_COUNTS);
+        create(db, RECIPE_FTS);
+    }
+
+    static void create(SupportSQLiteDatabase db, String[] triggers) {
+        for (String sql : triggers) db.execSQL(sql);
+    }
+
+    /**
+     * For bulk inserts inside a transaction: the per-row FTS triggers rewrite a recipe's
+     * ingredient list once per ingredient inserted. Drop them, insert, index the new recipes
+     * in one statement ({@link RecipeDao#indexRecipes}) and call {@link #resumeRecipeFts}.
+     * DDL is transactional, so other connections never see the triggers missing and a
+     * rollback restores them.
+     */
+    public static void suspendRecipeFts(SupportSQLiteDatabase db) {
+        drop(db, RECIPE_FTS);
+    }
+
+    public static void resumeRecipeFts(SupportSQLiteDatabase db) {
+        create(db, RECIPE_FTS);
+    }
+
+    // Needed before rebuilding a table: SQLite refuses to rename a table while a trigger
+    // elsewhere still refers to the dropped original
+    static void drop(SupportSQLiteDatabase db, String[] triggers) {
+        for (String sql : triggers) {
+            int start = sql.indexOf('`');
+            int end = sql.indexOf('`', start + 1);
+            db.execSQL("DROP TRIGGER IF EXISTS " + sql.substring(start, end + 1));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.buc.mealmate.data;
+
+/**
+ * One full-text hit: the recipe id and its FTS4 matchinfo('pcx') blob, used for ranking.
+ */
+public class FtsMatch {
+    public int id;
+    public byte[] matchInfo;
+}
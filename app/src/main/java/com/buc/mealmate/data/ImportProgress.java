@@ -0,0 +1,25 @@
+package com.buc.mealmate.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Resume point of a one-time import: the last source id already copied. Written in the same
+ * transaction as the rows it covers, so the two can't disagree after a kill.
+ */
+@Entity(tableName = "import_progress")
+public class ImportProgress {
+    @PrimaryKey
+    @NonNull
+    public String source;
+
+    @ColumnInfo(name = "last_id")
+    public long lastId;
+
+    public ImportProgress(@NonNull String source, long lastId) {
+        this.source = source;
+        this.lastId = lastId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.buc.mealmate.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+@Dao
+public interface ImportProgressDao {
+    // Null if this source has no checkpoint yet
+    @Query("SELECT last_id FROM import_progress WHERE source = :source")
+    Long getLastId(String source);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void save(ImportProgress progress);
+
+    @Query("DELETE FROM import_progress WHERE source = :source")
+    void clear(String source);
+}
@@ -0,0 +1,9 @@
+package com.buc.mealmate.data;
+
+/**
+ * The store an ingredient of a recipe was bought at.
+ */
+public class IngredientStore {
+    public String ingredient;
+    public String storeName;
+}
@@ -0,0 +1,403 @@
+package com.buc.mealmate.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+final class Migrations {
+
+    private Migrations() {
+    }
+
+    // Split the comma-joined ingredient columns into recipe_ingredient rows
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `recipe_ingredient` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`recipe_id` INTEGER NOT NULL, "
+                    + "`name` TEXT, "
+                    + "`position` INTEGER NOT NULL, "
+                    + "`purchased` INTEGER NOT NULL, "
+                    + "FOREIGN KEY(`recipe_id`) REFERENCES `recipes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recipe_ingredient_recipe_id_position` "
+                    + "ON `recipe_ingredient` (`recipe_id`, `position`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recipe_ingredient_name` "
+                    + "ON `recipe_ingredient` (`name`)");
+
+            Cursor cursor = db.query("SELECT id, ingredients, purchasedIngredients FROM recipes");
+            try {
+                while (cursor.moveToNext()) {
+                    int recipeId = cursor.getInt(0);
+                    String ingredients = cursor.getString(1);
+                    String purchasedIngredients = cursor.getString(2);
+                    if (ingredients == null || ingredients.trim().isEmpty()) continue;
+
+                    Set<String> purchased = new HashSet<>();
+                    if (purchasedIngredients != null) {
+                        for (String s : purchasedIngredients.split(",")) {
+                            purchased.add(s.trim().toLowerCase(Locale.ROOT));
+                        }
+                    }
+
+                    int position = 0;
+                    for (String s : ingredients.split(",")) {
+                        String name = s.trim();
+                        if (name.isEmpty()) continue;
+                        ContentValues cv = new ContentValues();
+                        cv.put("recipe_id", recipeId);
+                        cv.put("name", name);
+                        cv.put("position", position++);
+                        cv.put("purchased", purchased.contains(name.toLowerCase(Locale.ROOT)) ? 1 : 0);
+                        db.insert("recipe_ingredient", SQLiteDatabase.CONFLICT_NONE, cv);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            // SQLite can't drop columns on older devices, so rebuild recipes without the string columns
+            db.execSQL("CREATE TABLE IF NOT EXISTS `recipes_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`name` TEXT, "
+                    + "`instructions` TEXT, "
+                    + "`purchasedIngredientLocationsJson` TEXT)");
+            db.execSQL("INSERT INTO recipes_new (id, name, instructions, purchasedIngredientLocationsJson) "
+                    + "SELECT id, name, instructions, purchasedIngredientLocationsJson FROM recipes");
+            db.execSQL("DROP TABLE recipes");
+            db.execSQL("ALTER TABLE recipes_new RENAME TO recipes");
+        }
+    };
+
+    // Persist ingredient / missing counters so readiness is a column read and filterable by index
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE recipes ADD COLUMN `ingredient_count` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE recipes ADD COLUMN `missing_count` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE recipes SET "
+                    + "ingredient_count = (SELECT COUNT(*) FROM recipe_ingredient i WHERE i.recipe_id = recipes.id), "
+                    + "missing_count = (SELECT COUNT(*) FROM recipe_ingredient i "
+                    + "WHERE i.recipe_id = recipes.id AND i.purchased = 0)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recipes_missing_count_ingredient_count` "
+                    + "ON `recipes` (`missing_count`, `ingredient_count`)");
+            DatabaseTriggers.create(db, DatabaseTriggers.INGREDIENT_COUNTS);
+        }
+    };
+
+    // Full-text index over name, ingredients and instructions
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `recipes_fts` USING FTS4("
+                    + "`name` TEXT, `ingredients` TEXT, `instructions` TEXT, tokenize=unicode61)");
+            db.execSQL("INSERT INTO recipes_fts(rowid, name, ingredients, instructions) "
+                    + "SELECT r.id, r.name, "
+                    + "(SELECT group_concat(i.name, ' ') FROM recipe_ingredient i WHERE i.recipe_id = r.id), "
+                    + "r.instructions FROM recipes r");
+            DatabaseTriggers.create(db, DatabaseTriggers.RECIPE_FTS);
+        }
+    };
+
+    // Move the per-ingredient locations JSON into typed purchase_location rows
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `purchase_location` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`recipe_id` INTEGER NOT NULL, "
+                    + "`ingredient` TEXT, "
+                    + "`lat` REAL NOT NULL, "
+                    + "`lng` REAL NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, "
+                    + "FOREIGN KEY(`recipe_id`) REFERENCES `recipes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_purchase_location_recipe_id_ingredient` "
+                    + "ON `purchase_location` (`recipe_id`, `ingredient`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_purchase_location_ingredient` "
+                    + "ON `purchase_location` (`ingredient`)");
+
+            long now = System.currentTimeMillis();
+            Cursor cursor = db.query("SELECT id, purchasedIngredientLocationsJson FROM recipes "
+                    + "WHERE purchasedIngredientLocationsJson IS NOT NULL AND purchasedIngredientLocationsJson != ''");
+            try {
+                while (cursor.moveToNext()) {
+                    int recipeId = cursor.getInt(0);
+                    JSONObject locations;
+                    try {
+                        locations = new JSONObject(cursor.getString(1));
+                    } catch (JSONException e) {
+                        continue; // unreadable blob, nothing to keep
+                    }
+                    Iterator<String> ingredients = locations.keys();
+                    while (ingredients.hasNext()) {
+                        String ingredient = ingredients.next();
+                        JSONObject latLng = locations.optJSONObject(ingredient);
+                        if (latLng == null) continue;
+                        ContentValues cv = new ContentValues();
+                        cv.put("recipe_id", recipeId);
+                        cv.put("ingredient", ingredient);
+                        cv.put("lat", latLng.optDouble("latitude"));
+                        cv.put("lng", latLng.optDouble("longitude"));
+                        cv.put("timestamp", now);
+                        db.insert("purchase_location", SQLiteDatabase.CONFLICT_REPLACE, cv);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            // Rebuild recipes without the JSON column
+            DatabaseTriggers.drop(db, DatabaseTriggers.INGREDIENT_COUNTS);
+            DatabaseTriggers.drop(db, DatabaseTriggers.RECIPE_FTS);
+            db.execSQL("CREATE TABLE IF NOT EXISTS `recipes_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`name` TEXT, "
+                    + "`instructions` TEXT, "
+                    + "`ingredient_count` INTEGER NOT NULL DEFAULT 0, "
+                    + "`missing_count` INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("INSERT INTO recipes_new (id, name, instructions, ingredient_count, missing_count) "
+                    + "SELECT id, name, instructions, ingredient_count, missing_count FROM recipes");
+            db.execSQL("DROP TABLE recipes");
+            db.execSQL("ALTER TABLE recipes_new RENAME TO recipes");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recipes_missing_count_ingredient_count` "
+                    + "ON `recipes` (`missing_count`, `ingredient_count`)");
+            DatabaseTriggers.create(db, DatabaseTriggers.INGREDIENT_COUNTS);
+            DatabaseTriggers.create(db, DatabaseTriggers.RECIPE_FTS);
+        }
+    };
+
+    // Geohash column plus case-insensitive ingredient names for spatial purchase lookups
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `purchase_location_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`recipe_id` INTEGER NOT NULL, "
+                    + "`ingredient` TEXT COLLATE NOCASE, "
+                    + "`lat` REAL NOT NULL, "
+                    + "`lng` REAL NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, "
+                    + "`geohash` TEXT, "
+                    + "FOREIGN KEY(`recipe_id`) REFERENCES `recipes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            // v8 compared names case-sensitively, so "Salt" and "salt" can both exist for one recipe.
+            // Keep one row per NOCASE pair (bare columns come from the MAX(timestamp) row) or the
+            // unique index below fails
+            db.execSQL("INSERT INTO purchase_location_new (id, recipe_id, ingredient, lat, lng, timestamp) "
+                    + "SELECT id, recipe_id, ingredient, lat, lng, MAX(timestamp) FROM purchase_location "
+                    + "GROUP BY recipe_id, ingredient COLLATE NOCASE");
+            db.execSQL("DROP TABLE purchase_location");
+            db.execSQL("ALTER TABLE purchase_location_new RENAME TO purchase_location");
+
+            Cursor cursor = db.query("SELECT id, lat, lng FROM purchase_location");
+            try {
+                while (cursor.moveToNext()) {
+                    ContentValues cv = new ContentValues();
+                    cv.put("geohash", Geohash.encode(cursor.getDouble(1), cursor.getDouble(2),
+                            Store.GEOHASH_PRECISION));
+                    db.update("purchase_location", SQLiteDatabase.CONFLICT_NONE, cv,
+                            "id = ?", new Object[]{cursor.getInt(0)});
+                }
+            } finally {
+                cursor.close();
+            }
+
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_purchase_location_recipe_id_ingredient` "
+                    + "ON `purchase_location` (`recipe_id`, `ingredient`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_purchase_location_ingredient_geohash` "
+                    + "ON `purchase_location` (`ingredient`, `geohash`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_purchase_location_geohash` "
+                    + "ON `purchase_location` (`geohash`)");
+        }
+    };
+
+    // Persistent outbox for queued SMS
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `outbound_sms` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`phone` TEXT, "
+                    + "`body` TEXT, "
+                    + "`status` INTEGER NOT NULL, "
+                    + "`part_count` INTEGER NOT NULL, "
+                    + "`sent_mask` INTEGER NOT NULL, "
+                    + "`delivered_mask` INTEGER NOT NULL, "
+                    + "`attempts` INTEGER NOT NULL, "
+                    + "`last_error` INTEGER NOT NULL, "
+                    + "`created_at` INTEGER NOT NULL, "
+                    + "`last_attempt_at` INTEGER NOT NULL, "
+                    + "`next_attempt_at` INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_outbound_sms_status_next_attempt_at` "
+                    + "ON `outbound_sms` (`status`, `next_attempt_at`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_outbound_sms_last_attempt_at` "
+                    + "ON `outbound_sms` (`last_attempt_at`)");
+        }
+    };
+
+    // Accounts move from SharedPreferences into Room; rows arrive lazily at each user's next login
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `users` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`username` TEXT, "
+                    + "`password_hash` TEXT)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_users_username` ON `users` (`username`)");
+        }
+    };
+
+    // Recipes get an owner. Existing rows stay unowned until the next login claims them,
+    // since the migration can't know which account is signed in.
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            DatabaseTriggers.drop(db, DatabaseTriggers.INGREDIENT_COUNTS);
+            DatabaseTriggers.drop(db, DatabaseTriggers.RECIPE_FTS);
+            db.execSQL("CREATE TABLE IF NOT EXISTS `recipes_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`user_id` INTEGER, "
+                    + "`name` TEXT, "
+                    + "`instructions` TEXT, "
+                    + "`ingredient_count` INTEGER NOT NULL DEFAULT 0, "
+                    + "`missing_count` INTEGER NOT NULL DEFAULT 0, "
+                    + "FOREIGN KEY(`user_id`) REFERENCES `users`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("INSERT INTO recipes_new (id, name, instructions, ingredient_count, missing_count) "
+                    + "SELECT id, name, instructions, ingredient_count, missing_count FROM recipes");
+            db.execSQL("DROP TABLE recipes");
+            db.execSQL("ALTER TABLE recipes_new RENAME TO recipes");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recipes_user_id` ON `recipes` (`user_id`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_recipes_user_id_missing_count_ingredient_count` "
+                    + "ON `recipes` (`user_id`, `missing_count`, `ingredient_count`)");
+            DatabaseTriggers.create(db, DatabaseTriggers.INGREDIENT_COUNTS);
+            DatabaseTriggers.create(db, DatabaseTriggers.RECIPE_FTS);
+        }
+    };
+
+    // Stores clustered from purchase points; every existing point starts unclustered
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `stores` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`name` TEXT, "
+                    + "`lat` REAL NOT NULL, "
+                    + "`lng` REAL NOT NULL, "
+                    + "`point_count` INTEGER NOT NULL, "
+                    + "`geohash` TEXT)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_stores_geohash` ON `stores` (`geohash`)");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `purchase_location_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`recipe_id` INTEGER NOT NULL, "
+                    + "`ingredient` TEXT COLLATE NOCASE, "
+                    + "`lat` REAL NOT NULL, "
+                    + "`lng` REAL NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, "
+                    + "`geohash` TEXT, "
+                    + "`store_id` INTEGER, "
+                    + "FOREIGN KEY(`recipe_id`) REFERENCES `recipes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE, "
+                    + "FOREIGN KEY(`store_id`) REFERENCES `stores`(`id`) ON UPDATE NO ACTION ON DELETE SET NULL)");
+            db.execSQL("INSERT INTO purchase_location_new (id, recipe_id, ingredient, lat, lng, timestamp, geohash) "
+                    + "SELECT id, recipe_id, ingredient, lat, lng, timestamp, geohash FROM purchase_location");
+            db.execSQL("DROP TABLE purchase_location");
+            db.execSQL("ALTER TABLE purchase_location_new RENAME TO purchase_location");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_purchase_location_recipe_id_ingredient` "
+                    + "ON `purchase_location` (`recipe_id`, `ingredient`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_purchase_location_ingredient_geohash` "
+                    + "ON `purchase_location` (`ingredient`, `geohash`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_purchase_location_geohash` "
+                    + "ON `purchase_location` (`geohash`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_purchase_location_store_id` "
+                    + "ON `purchase_location` (`store_id`)");
+        }
+    };
+
+    // Checkpoints for the legacy import, kept next to the rows they describe
+    static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `import_progress` ("
+                    + "`source` TEXT NOT NULL, "
+                    + "`last_id` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`source`))");
+        }
+    };
+
+    // Stores kept the points that were moved or deleted out of them; recount them from the
+    // points they still hold and drop the ones left empty
+    static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DELETE FROM stores WHERE id NOT IN "
+                    + "(SELECT store_id FROM purchase_location WHERE store_id IS NOT NULL)");
+            Cursor cursor = db.query("SELECT store_id, AVG(lat), AVG(lng), COUNT(*) FROM purchase_location "
+                    + "WHERE store_id IS NOT NULL GROUP BY store_id");
+            try {
+                while (cursor.moveToNext()) {
+                    double lat = cursor.getDouble(1);
+                    double lng = cursor.getDouble(2);
+                    ContentValues cv = new ContentValues();
+                    cv.put("lat", lat);
+                    cv.put("lng", lng);
+                    cv.put("geohash", Geohash.encode(lat, lng, Store.GEOHASH_PRECISION));
+                    cv.put("point_count", cursor.getInt(3));
+                    db.update("stores", SQLiteDatabase.CONFLICT_NONE, cv,
+                            "id = ?", new Object[]{cursor.getInt(0)});
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    };
+
+    // Stores get an owner, and clustered purchases keep only their store id: coordinates move to
+    // the store and the per-point geohash indexes go. Stores were shared across accounts, so
+    // they're rebuilt: every point goes back to pending and is clustered per account on launch
+    static final Migration MIGRATION_15_16 = new Migration(15, 16) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DROP TABLE IF EXISTS `stores`");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `stores` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`user_id` INTEGER, "
+                    + "`name` TEXT, "
+                    + "`lat` REAL NOT NULL, "
+                    + "`lng` REAL NOT NULL, "
+                    + "`point_count` INTEGER NOT NULL, "
+                    + "`geohash` TEXT, "
+                    + "FOREIGN KEY(`user_id`) REFERENCES `users`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_stores_user_id_geohash` ON `stores` (`user_id`, `geohash`)");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `purchase_location_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`recipe_id` INTEGER NOT NULL, "
+                    + "`ingredient` TEXT COLLATE NOCASE, "
+                    + "`lat` REAL, "
+                    + "`lng` REAL, "
+                    + "`timestamp` INTEGER NOT NULL, "
+                    + "`store_id` INTEGER, "
+                    + "FOREIGN KEY(`recipe_id`) REFERENCES `recipes`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE, "
+                    + "FOREIGN KEY(`store_id`) REFERENCES `stores`(`id`) ON UPDATE NO ACTION ON DELETE SET NULL)");
+            db.execSQL("INSERT INTO purchase_location_new (id, recipe_id, ingredient, lat, lng, timestamp) "
+                    + "SELECT id, recipe_id, ingredient, lat, lng, timestamp FROM purchase_location");
+            db.execSQL("DROP TABLE purchase_location");
+            db.execSQL("ALTER TABLE purchase_location_new RENAME TO purchase_location");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_purchase_location_recipe_id_ingredient` "
+                    + "ON `purchase_location` (`recipe_id`, `ingredient`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_purchase_location_store_id` "
+                    + "ON `purchase_location` (`store_id`)");
+        }
+    };
+}
@@ -0,0 +1,69 @@
+package com.buc.mealmate.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One queued text message. Parts are tracked as bits in sent_mask / delivered_mask,
+ * so repeated status broadcasts for the same part are harmless.
+ */
+@Entity(tableName = "outbound_sms",
+        indices = {@Index({"status", "next_attempt_at"}), @Index("last_attempt_at")})
+public class OutboundSms {
+    public static final int STATUS_QUEUED = 0;
+    public static final int STATUS_SENDING = 1;
+    public static final int STATUS_SENT = 2;
+    public static final int STATUS_DELIVERED = 3;
+    public static final int STATUS_FAILED = 4;
+
+    public static final int MAX_PARTS = 63; // One bit per part in a long mask
+
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    public String phone;
+    public String body;
+    public int status;
+
+    @ColumnInfo(name = "part_count")
+    public int partCount;
+
+    @ColumnInfo(name = "sent_mask")
+    public long sentMask;
+
+    @ColumnInfo(name = "delivered_mask")
+    public long deliveredMask;
+
+    public int attempts;
+
+    @ColumnInfo(name = "last_error")
+    public int lastError; // SmsManager result code of the last failed attempt
+
+    @ColumnInfo(name = "created_at")
+    public long createdAt;
+
+    @ColumnInfo(name = "last_attempt_at")
+    public long lastAttemptAt;
+
+    @ColumnInfo(name = "next_attempt_at")
+    public long nextAttemptAt;
+
+    public OutboundSms() {
+    }
+
+    @Ignore
+    public OutboundSms(String phone, String body, long now) {
+        this.phone = phone;
+        this.body = body;
+        this.status = STATUS_QUEUED;
+        this.createdAt = now;
+        this.nextAttemptAt = now;
+    }
+
+    public long allPartsMask() {
+        return (1L << partCount) - 1;
+    }
+}
@@ -0,0 +1,103 @@
+package com.buc.mealmate.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
+
+import java.util.List;
+
+/**
+ * Persistent outbox for {@link com.buc.mealmate.SmsQueue}. State changes for one message
+ * are read-modify-write inside a transaction, since the send worker and the status
+ * receiver can touch the same row concurrently.
+ */
+@Dao
+public interface OutboundSmsDao {
+    @Insert
+    void insertAll(List<OutboundSms> messages);
+
+    @Update
+    void update(OutboundSms message);
+
+    @Query("SELECT * FROM outbound_sms WHERE id = :id")
+    OutboundSms getById(int id);
+
+    @Query("SELECT * FROM outbound_sms WHERE status = 0 AND next_attempt_at <= :now "
+            + "ORDER BY next_attempt_at, id LIMIT 1")
+    OutboundSms getNextDue(long now);
+
+    @Query("SELECT MIN(next_attempt_at) FROM outbound_sms WHERE status = 0")
+    Long getNextAttemptTime();
+
+    @Query("SELECT COUNT(*) FROM outbound_sms WHERE last_attempt_at > :since")
+    int countAttemptsSince(long since);
+
+    @Query("SELECT MIN(last_attempt_at) FROM outbound_sms WHERE last_attempt_at > :since")
+    Long getOldestAttemptSince(long since);
+
+    // Messages whose status broadcasts never came back, e.g. the radio was switched off mid-send
+    @Query("SELECT * FROM outbound_sms WHERE status = 1 AND last_attempt_at < :before")
+    List<OutboundSms> getStuckSending(long before);
+
+    @Query("SELECT COUNT(*) FROM outbound_sms WHERE status = 4")
+    LiveData<Integer> observeFailedCount();
+
+    // Returns false if the message is no longer queued, e.g. another run already claimed it
+    @Transaction
+    default boolean markSending(int id, int partCount, long now) {
+        OutboundSms message = getById(id);
+        if (message == null || message.status != OutboundSms.STATUS_QUEUED) return false;
+        message.status = OutboundSms.STATUS_SENDING;
+        message.partCount = partCount;
+        message.sentMask = 0;
+        message.deliveredMask = 0;
+        message.attempts++;
+        message.lastAttemptAt = now;
+        update(message);
+        return true;
+    }
+
+    // Returns true if this report finished the attempt's send phase
+    @Transaction
+    default boolean markPartSent(int id, int attempt, int part) {
+        OutboundSms message = getById(id);
+        if (message == null || message.attempts != attempt || message.status != OutboundSms.STATUS_SENDING) {
+            return false;
+        }
+        message.sentMask |= 1L << part;
+        boolean complete = message.sentMask == message.allPartsMask();
+        if (complete) message.status = OutboundSms.STATUS_SENT;
+        update(message);
+        return complete;
+    }
+
+    @Transaction
+    default void markPartDelivered(int id, int attempt, int part) {
+        OutboundSms message = getById(id);
+        if (message == null || message.attempts != attempt) return;
+        message.deliveredMask |= 1L << part;
+        if (message.deliveredMask == message.allPartsMask()) message.status = OutboundSms.STATUS_DELIVERED;
+        update(message);
+    }
+
+    /**
+     * Requeues the message after backoffMs, or fails it for good once maxAttempts is used up.
+     * Returns true if it was requeued. Reports for an older attempt are ignored.
+     */
+    @Transaction
+    default boolean markAttemptFailed(int id, int attempt, int error, long retryAt, int maxAttempts) {
+        OutboundSms message = getById(id);
+        if (message == null || message.attempts != attempt || message.status != OutboundSms.STATUS_SENDING) {
+            return false;
+        }
+        message.lastError = error;
+        boolean retry = message.attempts < maxAttempts;
+        message.status = retry ? OutboundSms.STATUS_QUEUED : OutboundSms.STATUS_FAILED;
+        message.nextAttemptAt = retryAt;
+        update(message);
+        return retry;
+    }
+}
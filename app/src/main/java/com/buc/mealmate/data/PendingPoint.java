@@ -0,0 +1,11 @@
+package com.buc.mealmate.data;
+
+/**
+ * A purchase point still waiting for a store, with the account that owns it through its recipe.
+ */
+public class PendingPoint {
+    public int id;
+    public double lat;
+    public double lng;
+    public Integer userId;
+}
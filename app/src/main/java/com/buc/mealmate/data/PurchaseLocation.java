@@ -0,0 +1,60 @@
+package com.buc.mealmate.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Where an ingredient of a recipe was bought. One row per (recipe, ingredient).
+ * Ingredient names compare case-insensitively. A new fix keeps its own lat/lng only until it
+ * is grouped into a {@link Store}; from then on the row just points at the store, and the
+ * location reads in {@link RecipeDao} fill lat/lng in from the store's centroid.
+ */
+@Entity(tableName = "purchase_location",
+        foreignKeys = {
+                @ForeignKey(entity = Recipe.class,
+                        parentColumns = "id",
+                        childColumns = "recipe_id",
+                        onDelete = ForeignKey.CASCADE),
+                @ForeignKey(entity = Store.class,
+                        parentColumns = "id",
+                        childColumns = "store_id",
+                        onDelete = ForeignKey.SET_NULL)
+        },
+        indices = {
+                @Index(value = {"recipe_id", "ingredient"}, unique = true),
+                @Index(value = "store_id")
+        })
+public class PurchaseLocation {
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    @ColumnInfo(name = "recipe_id")
+    public int recipeId;
+
+    @ColumnInfo(collate = ColumnInfo.NOCASE)
+    public String ingredient;
+    // Stored only while store_id is null
+    public Double lat;
+    public Double lng;
+    public long timestamp; // Epoch millis when the fix was taken
+
+    // Set by the store clusterer; null until the point has been folded into a store
+    @ColumnInfo(name = "store_id")
+    public Integer storeId;
+
+    public PurchaseLocation() {
+    }
+
+    @Ignore
+    public PurchaseLocation(int recipeId, String ingredient, double lat, double lng, long timestamp) {
+        this.recipeId = recipeId;
+        this.ingredient = ingredient;
+        this.lat = lat;
+        this.lng = lng;
+        this.timestamp = timestamp;
+    }
+}
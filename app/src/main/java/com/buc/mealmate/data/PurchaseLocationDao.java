@@ -0,0 +1,40 @@
+package com.buc.mealmate.data;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Spatial lookups over one account's purchases. Positions are kept per store, so each call is an
+ * index range scan over one geohash cell of stores, joined to the purchases clustered into them;
+ * {@link com.buc.mealmate.NearbyPurchaseFinder} combines cells into box and nearest queries.
+ */
+@Dao
+public interface PurchaseLocationDao {
+    @Query("SELECT DISTINCT stores.id AS storeId, stores.name AS storeName, stores.lat AS lat, "
+            + "stores.lng AS lng, purchase_location.ingredient AS ingredient "
+            + "FROM stores JOIN purchase_location ON purchase_location.store_id = stores.id "
+            + "WHERE stores.user_id = :userId AND stores.geohash >= :from AND stores.geohash < :to")
+    List<StoreStock> getInCell(int userId, String from, String to);
+
+    // ingredient is NOCASE
+    @Query("SELECT DISTINCT stores.id AS storeId, stores.name AS storeName, stores.lat AS lat, "
+            + "stores.lng AS lng, purchase_location.ingredient AS ingredient "
+            + "FROM stores JOIN purchase_location ON purchase_location.store_id = stores.id "
+            + "WHERE stores.user_id = :userId AND stores.geohash >= :from AND stores.geohash < :to "
+            + "AND purchase_location.ingredient = :ingredient")
+    List<StoreStock> getIngredientInCell(int userId, String ingredient, String from, String to);
+
+    @Query("SELECT DISTINCT stores.id AS storeId, stores.name AS storeName, stores.lat AS lat, "
+            + "stores.lng AS lng, purchase_location.ingredient AS ingredient "
+            + "FROM stores JOIN purchase_location ON purchase_location.store_id = stores.id "
+            + "WHERE stores.user_id = :userId")
+    List<StoreStock> getAll(int userId);
+
+    @Query("SELECT DISTINCT stores.id AS storeId, stores.name AS storeName, stores.lat AS lat, "
+            + "stores.lng AS lng, purchase_location.ingredient AS ingredient "
+            + "FROM stores JOIN purchase_location ON purchase_location.store_id = stores.id "
+            + "WHERE stores.user_id = :userId AND purchase_location.ingredient = :ingredient")
+    List<StoreStock> getAllForIngredient(int userId, String ingredient);
+}
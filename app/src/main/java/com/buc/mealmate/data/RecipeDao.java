@@ -1,27 +1,247 @@
 package com.buc.mealmate.data;
 
+import android.database.Cursor;
+
+import androidx.paging.PagingSource;
 import androidx.room.Dao;
-import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
-import androidx.room.Update;
+import androidx.room.Transaction;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Dao
 public interface RecipeDao {
-    @Query("SELECT * FROM recipes")
-    List<Recipe> getAll();
+    // Paged sources for the recipe list; Room invalidates them whenever the table changes.
+    // Every list query is scoped to one owner, so it only walks that user's entries in the user_id indexes.
+    // Readiness comes from the trigger-maintained counters.
+    @Query("SELECT id, name, (ingredient_count > 0 AND missing_count = 0) AS ready "
+            + "FROM recipes WHERE user_id = :userId ORDER BY id")
+    PagingSource<Integer, RecipeListItem> getListPaged(int userId);
+
+    @Query("SELECT id, name, 1 AS ready FROM recipes "
+            + "WHERE user_id = :userId AND missing_count = 0 AND ingredient_count > 0 ORDER BY id")
+    PagingSource<Integer, RecipeListItem> getReadyPaged(int userId);
+
+    @Query("SELECT id, name, 0 AS ready FROM recipes "
+            + "WHERE user_id = :userId AND missing_count > 0 ORDER BY missing_count, id")
+    PagingSource<Integer, RecipeListItem> getNotReadyPaged(int userId);
+
+    // First rows of the unfiltered list, read during the splash to warm the cache
+    @Query("SELECT id, name, (ingredient_count > 0 AND missing_count = 0) AS ready "
+            + "FROM recipes WHERE user_id = :userId ORDER BY id LIMIT :limit")
+    List<RecipeListItem> getListHead(int userId, int limit);
+
+    // Bare id columns for "select all"; read straight off the cursor to avoid boxing
+    @Query("SELECT id FROM recipes WHERE user_id = :userId")
+    Cursor getIdsCursor(int userId);
+
+    @Query("SELECT id FROM recipes WHERE user_id = :userId AND missing_count = 0 AND ingredient_count > 0")
+    Cursor getReadyIdsCursor(int userId);
+
+    @Query("SELECT id FROM recipes WHERE user_id = :userId AND missing_count > 0")
+    Cursor getNotReadyIdsCursor(int userId);
+
+    // Prefix full-text search; the caller ranks hits from the matchinfo blob
+    @Query("SELECT recipes_fts.rowid AS id, matchinfo(recipes_fts, 'pcx') AS matchInfo "
+            + "FROM recipes_fts JOIN recipes ON recipes.id = recipes_fts.rowid "
+            + "WHERE recipes_fts MATCH :query AND recipes.user_id = :userId")
+    List<FtsMatch> searchMatches(String query, int userId);
+
+    // Every ingredient of every recipe of the account, one row per ingredient grouped by recipe;
+    // recipes without ingredients come back once with a null name. Feeds the pantry index rebuild.
+    @Query("SELECT recipes.id AS recipe_id, recipes.name AS recipe_name, "
+            + "recipe_ingredient.name AS ingredient, recipe_ingredient.purchased AS purchased "
+            + "FROM recipes LEFT JOIN recipe_ingredient ON recipe_ingredient.recipe_id = recipes.id "
+            + "WHERE recipes.user_id = :userId ORDER BY recipes.id")
+    Cursor getPantryRowsCursor(int userId);
+
+    @Query("UPDATE recipes SET user_id = :userId WHERE user_id IS NULL")
+    int claimUnownedRecipes(int userId);
+
+    @Query("UPDATE stores SET user_id = :userId WHERE user_id IS NULL")
+    void claimUnownedStores(int userId);
+
+    // Rows from before accounts owned recipes (or from the legacy import) go to whoever logs in,
+    // together with the stores their purchases were clustered into
+    @Transaction
+    default int claimUnowned(int userId) {
+        claimUnownedStores(userId);
+        return claimUnownedRecipes(userId);
+    }
+
+    @Query("SELECT id, name, (ingredient_count > 0 AND missing_count = 0) AS ready "
+            + "FROM recipes WHERE id IN (:ids)")
+    List<RecipeListItem> getListItemsByIds(List<Integer> ids);
 
     @Query("SELECT * FROM recipes WHERE id = :id LIMIT 1")
     Recipe getById(int id);
 
+    @Transaction
+    @Query("SELECT * FROM recipes WHERE id IN (:ids)")
+    List<RecipeWithIngredients> getWithIngredientsByIds(List<Integer> ids);
+
+    // Keyset page for streaming export: stays cheap however deep into the table it is
+    @Query("SELECT * FROM recipes WHERE user_id = :userId AND id > :afterId ORDER BY id LIMIT :limit")
+    List<Recipe> getPageAfter(int userId, int afterId, int limit);
+
+    @Query("SELECT * FROM recipe_ingredient WHERE recipe_id IN (:recipeIds) ORDER BY recipe_id, position")
+    List<RecipeIngredient> getIngredientsFor(List<Integer> recipeIds);
+
+    @Query("SELECT " + LOCATION_ROWS + " WHERE purchase_location.recipe_id IN (:recipeIds) "
+            + "ORDER BY purchase_location.recipe_id, purchase_location.id")
+    List<PurchaseLocation> getLocationsFor(List<Integer> recipeIds);
+
+    // What the RECIPE_FTS triggers would have written, for recipes inserted while they were suspended
+    @Query("INSERT INTO recipes_fts(rowid, name, ingredients, instructions) "
+            + "SELECT id, name, COALESCE((SELECT group_concat(name, ' ') FROM recipe_ingredient "
+            + "WHERE recipe_id = recipes.id), ''), instructions FROM recipes WHERE id IN (:recipeIds)")
+    void indexRecipes(List<Integer> recipeIds);
+
+    // Missing ingredients across the given recipes in one grouped scan of the recipe_id index
+    @Query("SELECT MIN(trim(name)) AS name, COUNT(DISTINCT recipe_id) AS recipeCount "
+            + "FROM recipe_ingredient WHERE recipe_id IN (:recipeIds) AND purchased = 0 AND name IS NOT NULL "
+            + "GROUP BY lower(trim(name)) ORDER BY recipeCount DESC, name")
+    List<ShoppingListItem> getShoppingList(List<Integer> recipeIds);
+
+    @Query("SELECT * FROM recipe_ingredient WHERE recipe_id = :recipeId ORDER BY position")
+    List<RecipeIngredient> getIngredients(int recipeId);
+
+    @Query("SELECT " + LOCATION_ROWS + " WHERE purchase_location.recipe_id = :recipeId")
+    List<PurchaseLocation> getLocations(int recipeId);
+
+    @Transaction
+    default RecipeWithIngredients getWithIngredients(int id) {
+        Recipe recipe = getById(id);
+        if (recipe == null) return null;
+        return new RecipeWithIngredients(recipe, getIngredients(id), getLocations(id));
+    }
+
     @Insert
-    void insert(Recipe recipe);
+    long insert(Recipe recipe);
+
+    @Insert
+    long[] insertAll(List<Recipe> recipes);
+
+    @Insert
+    void insertIngredients(List<RecipeIngredient> ingredients);
+
+    // Returns the new recipe's id
+    @Transaction
+    default int insertWithIngredients(Recipe recipe, List<String> ingredientNames) {
+        int recipeId = (int) insert(recipe);
+        List<RecipeIngredient> rows = new ArrayList<>();
+        for (int i = 0; i < ingredientNames.size(); i++) {
+            rows.add(new RecipeIngredient(recipeId, ingredientNames.get(i), i));
+        }
+        insertIngredients(rows);
+        return recipeId;
+    }
+
+    // Names of the rows a setPurchasedChunk call is about to flip, read first so the pantry index can follow
+    @Query("SELECT name FROM recipe_ingredient WHERE id IN (:ids) AND purchased != :purchased")
+    List<String> getNamesFlippingChunk(List<Integer> ids, boolean purchased);
+
+    @Query("SELECT name FROM recipe_ingredient WHERE recipe_id IN (:recipeIds) AND purchased = :purchased")
+    List<String> getIngredientNamesChunk(List<Integer> recipeIds, boolean purchased);
+
+    default List<String> getNamesFlipping(List<Integer> ids, boolean purchased) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += MAX_BATCH_IDS) {
+            names.addAll(getNamesFlippingChunk(ids.subList(i, Math.min(ids.size(), i + MAX_BATCH_IDS)), purchased));
+        }
+        return names;
+    }
+
+    default List<String> getIngredientNames(List<Integer> recipeIds, boolean purchased) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < recipeIds.size(); i += MAX_BATCH_IDS) {
+            names.addAll(getIngredientNamesChunk(
+                    recipeIds.subList(i, Math.min(recipeIds.size(), i + MAX_BATCH_IDS)), purchased));
+        }
+        return names;
+    }
+
+    // Single-column writes: touching only purchased keeps the name-keyed FTS trigger from firing,
+    // and rows already in the target state aren't rewritten at all
+    @Query("UPDATE recipe_ingredient SET purchased = :purchased WHERE id IN (:ids) AND purchased != :purchased")
+    void setPurchasedChunk(List<Integer> ids, boolean purchased);
+
+    // ingredient is NOCASE, so this matches however the name was typed
+    @Query("DELETE FROM purchase_location WHERE recipe_id = :recipeId AND ingredient IN (:ingredients)")
+    void deleteLocations(int recipeId, List<String> ingredients);
+
+    // A moved point has to be clustered again
+    @Query("UPDATE purchase_location SET lat = :lat, lng = :lng, timestamp = :timestamp, "
+            + "store_id = NULL WHERE recipe_id = :recipeId AND ingredient = :ingredient")
+    int updateLocation(int recipeId, String ingredient, double lat, double lng, long timestamp);
+
+    @Insert
+    void insertLocation(PurchaseLocation location);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertLocations(List<PurchaseLocation> locations);
+
+    // Updates the existing row in place; REPLACE would delete it and reinsert under a new id,
+    // rewriting every index entry of the row
+    @Transaction
+    default void putLocation(PurchaseLocation location) {
+        if (updateLocation(location.recipeId, location.ingredient, location.lat, location.lng,
+                location.timestamp) == 0) {
+            insertLocation(location);
+        }
+    }
+
+    // One flush of the write-behind queue: only the rows that changed since the last one.
+    // Recipe rows are left alone: their counters follow recipe_ingredient through triggers
+    @Transaction
+    default void applyPurchaseChanges(int recipeId, List<Integer> purchasedIds, List<Integer> unpurchasedIds,
+                                      List<PurchaseLocation> upserts, List<String> removedLocations) {
+        for (int i = 0; i < purchasedIds.size(); i += MAX_BATCH_IDS) {
+            setPurchasedChunk(purchasedIds.subList(i, Math.min(purchasedIds.size(), i + MAX_BATCH_IDS)), true);
+        }
+        for (int i = 0; i < unpurchasedIds.size(); i += MAX_BATCH_IDS) {
+            setPurchasedChunk(unpurchasedIds.subList(i, Math.min(unpurchasedIds.size(), i + MAX_BATCH_IDS)), false);
+        }
+        for (int i = 0; i < removedLocations.size(); i += MAX_BATCH_IDS) {
+            deleteLocations(recipeId, removedLocations.subList(i, Math.min(removedLocations.size(), i + MAX_BATCH_IDS)));
+        }
+        for (PurchaseLocation location : upserts) putLocation(location);
+    }
+
+    @Query("DELETE FROM recipes WHERE id = :id")
+    void deleteById(int id);
+
+    // SQLite allows at most 999 bound arguments per statement, so bulk calls go in chunks
+    int MAX_BATCH_IDS = 900;
+
+    // purchase_location with a clustered point's position read from its store
+    String LOCATION_ROWS = "purchase_location.id, purchase_location.recipe_id, purchase_location.ingredient, "
+            + "COALESCE(purchase_location.lat, stores.lat) AS lat, "
+            + "COALESCE(purchase_location.lng, stores.lng) AS lng, "
+            + "purchase_location.timestamp, purchase_location.store_id "
+            + "FROM purchase_location LEFT JOIN stores ON stores.id = purchase_location.store_id";
+
+    @Query("DELETE FROM recipes WHERE id IN (:ids)")
+    void deleteByIdsChunk(List<Integer> ids);
+
+    @Query("UPDATE recipe_ingredient SET purchased = 1 WHERE recipe_id IN (:recipeIds) AND purchased = 0")
+    void markPurchasedChunk(List<Integer> recipeIds);
 
-    @Update
-    void update(Recipe recipe);
+    // One transaction, so observers (and the paged list) are invalidated once
+    @Transaction
+    default void deleteByIds(List<Integer> ids) {
+        for (int i = 0; i < ids.size(); i += MAX_BATCH_IDS) {
+            deleteByIdsChunk(ids.subList(i, Math.min(ids.size(), i + MAX_BATCH_IDS)));
+        }
+    }
 
-    @Delete
-    void delete(Recipe recipe);
+    @Transaction
+    default void markAllPurchased(List<Integer> recipeIds) {
+        for (int i = 0; i < recipeIds.size(); i += MAX_BATCH_IDS) {
+            markPurchasedChunk(recipeIds.subList(i, Math.min(recipeIds.size(), i + MAX_BATCH_IDS)));
+        }
+    }
 }
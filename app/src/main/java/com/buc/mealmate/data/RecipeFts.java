@@ -0,0 +1,23 @@
+package com.buc.mealmate.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index over recipes. rowid is the recipe id; rows are kept in sync with
+ * recipes and recipe_ingredient by the triggers in {@link DatabaseTriggers#RECIPE_FTS}.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "recipes_fts")
+public class RecipeFts {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    public int rowid;
+
+    public String name;
+    public String ingredients; // Space-joined ingredient names
+    public String instructions;
+}
@@ -0,0 +1,35 @@
+package com.buc.mealmate.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "recipe_ingredient",
+        foreignKeys = @ForeignKey(entity = Recipe.class,
+                parentColumns = "id",
+                childColumns = "recipe_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = {
+                @Index(value = {"recipe_id", "position"}),
+                @Index(value = "name")
+        })
+public class RecipeIngredient {
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    @ColumnInfo(name = "recipe_id")
+    public int recipeId;
+
+    public String name;
+    public int position; // Order the ingredient was added in
+    public boolean purchased;
+
+    public RecipeIngredient(int recipeId, String name, int position) {
+        this.recipeId = recipeId;
+        this.name = name;
+        this.position = position;
+        this.purchased = false;
+    }
+}
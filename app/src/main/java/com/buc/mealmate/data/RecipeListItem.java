@@ -0,0 +1,11 @@
+package com.buc.mealmate.data;
+
+/**
+ * Row shown in the recipe list. Only the columns the list displays are loaded;
+ * readiness is computed in SQL so ingredient rows never reach the list.
+ */
+public class RecipeListItem {
+    public int id;
+    public String name;
+    public boolean ready;
+}
@@ -0,0 +1,45 @@
+package com.buc.mealmate.data;
+
+import androidx.room.Embedded;
+import androidx.room.Ignore;
+import androidx.room.Relation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecipeWithIngredients {
+    @Embedded
+    public Recipe recipe;
+
+    @Relation(parentColumn = "id", entityColumn = "recipe_id")
+    public List<RecipeIngredient> ingredients;
+
+    @Relation(parentColumn = "id", entityColumn = "recipe_id")
+    public List<PurchaseLocation> locations;
+
+    public RecipeWithIngredients() {
+    }
+
+    @Ignore
+    public RecipeWithIngredients(Recipe recipe, List<RecipeIngredient> ingredients,
+                                 List<PurchaseLocation> locations) {
+        this.recipe = recipe;
+        this.ingredients = ingredients;
+        this.locations = locations;
+    }
+
+    public List<String> getIngredientNames() {
+        List<String> names = new ArrayList<>();
+        if (ingredients == null) return names;
+        for (RecipeIngredient ingredient : ingredients) names.add(ingredient.name);
+        return names;
+    }
+
+    public boolean isReadyToCook() {
+        if (ingredients == null || ingredients.isEmpty()) return false;
+        for (RecipeIngredient ingredient : ingredients) {
+            if (!ingredient.purchased) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,10 @@
+package com.buc.mealmate.data;
+
+/**
+ * One line of the combined shopping list: an unpurchased ingredient, deduplicated
+ * case-insensitively, and how many of the chosen recipes still need it.
+ */
+public class ShoppingListItem {
+    public String name;
+    public int recipeCount;
+}
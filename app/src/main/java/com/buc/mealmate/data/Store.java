@@ -0,0 +1,35 @@
+package com.buc.mealmate.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A shop one account bought at, found by clustering that account's purchase points. lat/lng is
+ * the running centroid of every point folded into it and, once a point is folded in, the only
+ * position kept for it; geohash backs the "stores near this point" lookups.
+ */
+@Entity(tableName = "stores",
+        foreignKeys = @ForeignKey(entity = User.class, parentColumns = "id",
+                childColumns = "user_id", onDelete = ForeignKey.CASCADE),
+        indices = @Index({"user_id", "geohash"}))
+public class Store {
+    public static final int GEOHASH_PRECISION = 9; // ~5 m cells
+
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    // Null only for stores of recipes nobody has claimed yet, like the recipes themselves
+    @ColumnInfo(name = "user_id")
+    public Integer userId;
+
+    public String name;
+    public double lat;
+    public double lng;
+    // Points currently assigned here; the store is deleted when this reaches 0
+    @ColumnInfo(name = "point_count")
+    public int pointCount;
+    public String geohash;
+}
@@ -0,0 +1,85 @@
+package com.buc.mealmate.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Store clustering over purchase_location; see {@link com.buc.mealmate.StoreClusterer}.
+ */
+@Dao
+public interface StoreDao {
+    // user_id IS, so the stores of unclaimed recipes are matched by a null owner too
+    @Query("SELECT * FROM stores WHERE user_id IS :userId AND geohash >= :from AND geohash < :to")
+    List<Store> getInCell(Integer userId, String from, String to);
+
+    @Insert
+    long insert(Store store);
+
+    @Query("UPDATE stores SET name = :name WHERE id = :id")
+    void rename(int id, String name);
+
+    @Query("UPDATE stores SET lat = :lat, lng = :lng, geohash = :geohash, point_count = :pointCount WHERE id = :id")
+    void moveCentroid(int id, double lat, double lng, String geohash, int pointCount);
+
+    // Points not folded into a store yet: new, moved or imported since the last pass
+    @Query("SELECT purchase_location.id AS id, purchase_location.lat AS lat, purchase_location.lng AS lng, "
+            + "recipes.user_id AS userId FROM purchase_location "
+            + "JOIN recipes ON recipes.id = purchase_location.recipe_id "
+            + "WHERE purchase_location.store_id IS NULL AND purchase_location.lat IS NOT NULL "
+            + "ORDER BY purchase_location.id LIMIT :limit")
+    List<PendingPoint> getUnclustered(int limit);
+
+    // The store's centroid stands in for the point's own fix from here on
+    @Query("UPDATE purchase_location SET store_id = :storeId, lat = NULL, lng = NULL WHERE id = :locationId")
+    void assign(int locationId, int storeId);
+
+    // Stores that one recipe's points for these ingredients are in; ingredient is NOCASE
+    @Query("SELECT DISTINCT store_id FROM purchase_location "
+            + "WHERE recipe_id = :recipeId AND ingredient IN (:ingredients) AND store_id IS NOT NULL")
+    List<Integer> getStoreIdsChunk(int recipeId, List<String> ingredients);
+
+    @Query("SELECT DISTINCT store_id FROM purchase_location WHERE recipe_id IN (:recipeIds) AND store_id IS NOT NULL")
+    List<Integer> getStoreIdsForRecipesChunk(List<Integer> recipeIds);
+
+    default List<Integer> getStoreIds(int recipeId, List<String> ingredients) {
+        List<Integer> storeIds = new ArrayList<>();
+        for (int i = 0; i < ingredients.size(); i += RecipeDao.MAX_BATCH_IDS) {
+            storeIds.addAll(getStoreIdsChunk(recipeId,
+                    ingredients.subList(i, Math.min(ingredients.size(), i + RecipeDao.MAX_BATCH_IDS))));
+        }
+        return storeIds;
+    }
+
+    default List<Integer> getStoreIdsForRecipes(List<Integer> recipeIds) {
+        List<Integer> storeIds = new ArrayList<>();
+        for (int i = 0; i < recipeIds.size(); i += RecipeDao.MAX_BATCH_IDS) {
+            storeIds.addAll(getStoreIdsForRecipesChunk(
+                    recipeIds.subList(i, Math.min(recipeIds.size(), i + RecipeDao.MAX_BATCH_IDS))));
+        }
+        return storeIds;
+    }
+
+    // One store_id index range per store, so this stays cheap however many points there are
+    @Query("UPDATE stores SET point_count = "
+            + "(SELECT COUNT(*) FROM purchase_location WHERE store_id = stores.id) WHERE id IN (:storeIds)")
+    void recountChunk(List<Integer> storeIds);
+
+    @Query("DELETE FROM stores WHERE id IN (:storeIds) AND point_count = 0")
+    void deleteEmptyChunk(List<Integer> storeIds);
+
+    @Query("SELECT purchase_location.ingredient AS ingredient, stores.name AS storeName "
+            + "FROM purchase_location JOIN stores ON stores.id = purchase_location.store_id "
+            + "WHERE purchase_location.recipe_id = :recipeId")
+    List<IngredientStore> getStoresForRecipe(int recipeId);
+
+    // Stores where this account bought any of the ingredients before; ingredient is NOCASE
+    @Query("SELECT DISTINCT stores.id AS storeId, stores.name AS storeName, stores.lat AS lat, "
+            + "stores.lng AS lng, purchase_location.ingredient AS ingredient "
+            + "FROM stores JOIN purchase_location ON purchase_location.store_id = stores.id "
+            + "WHERE stores.user_id = :userId AND purchase_location.ingredient IN (:ingredients)")
+    List<StoreStock> getStockFor(int userId, List<String> ingredients);
+}
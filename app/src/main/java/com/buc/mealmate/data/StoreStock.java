@@ -0,0 +1,12 @@
+package com.buc.mealmate.data;
+
+/**
+ * An ingredient that was bought at a store before, with the store's position.
+ */
+public class StoreStock {
+    public int storeId;
+    public String storeName;
+    public double lat;
+    public double lng;
+    public String ingredient;
+}
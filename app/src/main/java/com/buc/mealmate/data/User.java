@@ -1,18 +1,28 @@
 package com.buc.mealmate.data;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "users")
+@Entity(tableName = "users", indices = @Index(value = "username", unique = true))
 public class User {
     @PrimaryKey(autoGenerate = true)
     public int id;
 
     public String username;
-    public String password;
 
-    public User(String username, String password) {
+    // PasswordHasher output; the plain password is never stored
+    @ColumnInfo(name = "password_hash")
+    public String passwordHash;
+
+    public User() {
+    }
+
+    @Ignore
+    public User(String username, String passwordHash) {
         this.username = username;
-        this.password = password;
+        this.passwordHash = passwordHash;
     }
 }
@@ -2,16 +2,18 @@ package com.buc.mealmate.data;
 
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 
 @Dao
 public interface UserDao {
-    @Insert
-    void insert(User user);
-
-    @Query("SELECT * FROM users WHERE username = :username AND password = :password LIMIT 1")
-    User login(String username, String password);
+    // Returns -1 if the username is taken
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(User user);
 
     @Query("SELECT * FROM users WHERE username = :username LIMIT 1")
     User findByUsername(String username);
+
+    @Query("UPDATE users SET password_hash = :passwordHash WHERE id = :id")
+    void updatePasswordHash(int id, String passwordHash);
 }
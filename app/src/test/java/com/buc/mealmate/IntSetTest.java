@@ -0,0 +1,94 @@
+package com.buc.mealmate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class IntSetTest {
+
+    @Test
+    public void zeroIsAnOrdinaryKey() {
+        IntSet set = new IntSet();
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(1, set.size());
+        assertTrue(set.remove(0));
+        assertFalse(set.remove(0));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void removeKeepsTheRestOfTheProbeRunReachable() {
+        // A small table filled to its load factor, so probe runs are long and wrap around
+        IntSet set = new IntSet(4);
+        for (int key = 1; key <= 200; key++) set.add(key);
+        for (int key = 1; key <= 200; key += 2) assertTrue(set.remove(key));
+
+        for (int key = 1; key <= 200; key++) assertEquals("key " + key, key % 2 == 0, set.contains(key));
+        assertEquals(100, set.size());
+    }
+
+    @Test
+    public void removeAllLeavesNoTombstones() {
+        IntSet set = new IntSet(4);
+        for (int round = 0; round < 50; round++) {
+            for (int key = 1; key <= 64; key++) set.add(key * 31 + round);
+            for (int key = 1; key <= 64; key++) assertTrue(set.remove(key * 31 + round));
+            assertTrue(set.isEmpty());
+            assertEquals(0, set.toArray().length);
+        }
+        // A lookup in an empty table ends at the first slot it probes
+        assertFalse(set.contains(42));
+    }
+
+    @Test
+    public void matchesHashSetUnderRandomChurn() {
+        Random random = new Random(12);
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+        // A narrow key range keeps the table dense with collisions; negatives and 0 included
+        for (int op = 0; op < 200000; op++) {
+            int key = random.nextInt(401) - 200;
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.add(key), set.add(key));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), set.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.contains(key), set.contains(key));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+
+        int[] actual = set.toArray();
+        Arrays.sort(actual);
+        int[] wanted = new int[expected.size()];
+        int i = 0;
+        for (int key : expected) wanted[i++] = key;
+        Arrays.sort(wanted);
+        assertArrayEquals(wanted, actual);
+    }
+
+    @Test
+    public void clearEmptiesTheSet() {
+        IntSet set = new IntSet();
+        set.addAll(new int[]{0, 1, 2, 3, -4});
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(-4));
+        assertTrue(set.add(3));
+    }
+}
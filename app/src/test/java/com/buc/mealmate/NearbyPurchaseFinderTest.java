@@ -0,0 +1,153 @@
+package com.buc.mealmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.buc.mealmate.data.Geohash;
+import com.buc.mealmate.data.PurchaseLocationDao;
+import com.buc.mealmate.data.Store;
+import com.buc.mealmate.data.StoreStock;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class NearbyPurchaseFinderTest {
+
+    private static final int USER_ID = 1;
+
+    /** Answers the cell scans from a list, the way the stores.geohash range queries would. */
+    private static class FakeDao implements PurchaseLocationDao {
+        final List<StoreStock> rows = new ArrayList<>();
+        int cellScans;
+
+        void add(int storeId, double lat, double lng, String ingredient) {
+            StoreStock row = new StoreStock();
+            row.storeId = storeId;
+            row.storeName = "Store " + storeId;
+            row.lat = lat;
+            row.lng = lng;
+            row.ingredient = ingredient;
+            rows.add(row);
+        }
+
+        @Override
+        public List<StoreStock> getInCell(int userId, String from, String to) {
+            return getIngredientInCell(userId, null, from, to);
+        }
+
+        @Override
+        public List<StoreStock> getIngredientInCell(int userId, String ingredient, String from, String to) {
+            cellScans++;
+            List<StoreStock> found = new ArrayList<>();
+            for (StoreStock row : getAllForIngredient(userId, ingredient)) {
+                String geohash = Geohash.encode(row.lat, row.lng, Store.GEOHASH_PRECISION);
+                if (geohash.compareTo(from) >= 0 && geohash.compareTo(to) < 0) found.add(row);
+            }
+            return found;
+        }
+
+        @Override
+        public List<StoreStock> getAll(int userId) {
+            return getAllForIngredient(userId, null);
+        }
+
+        @Override
+        public List<StoreStock> getAllForIngredient(int userId, String ingredient) {
+            assertEquals(USER_ID, userId);
+            List<StoreStock> found = new ArrayList<>();
+            for (StoreStock row : rows) {
+                if (ingredient == null || row.ingredient.equalsIgnoreCase(ingredient)) found.add(row);
+            }
+            return found;
+        }
+    }
+
+    private static List<Integer> storeIds(List<StoreStock> stores) {
+        List<Integer> ids = new ArrayList<>();
+        for (StoreStock store : stores) ids.add(store.storeId);
+        Collections.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void boxAcrossTheGreenwichCellEdge() {
+        // Every geohash cell has an edge on the prime meridian: west of it hashes start with 'g',
+        // east of it with 'u', so the two halves of this box are far apart in the index
+        assertTrue(Geohash.encode(51.5, -0.005, Store.GEOHASH_PRECISION).startsWith("g"));
+        assertTrue(Geohash.encode(51.5, 0.005, Store.GEOHASH_PRECISION).startsWith("u"));
+
+        FakeDao dao = new FakeDao();
+        dao.add(1, 51.5, -0.005, "milk");
+        dao.add(2, 51.5, 0.005, "Milk");
+        dao.add(2, 51.5, 0.005, "eggs");
+        dao.add(3, 51.5, 0.0, "milk");
+        dao.add(4, 51.5, -0.02, "milk");
+        dao.add(5, 51.52, 0.0, "milk");
+        dao.add(6, 51.48, 0.005, "milk");
+        NearbyPurchaseFinder finder = new NearbyPurchaseFinder(dao, USER_ID);
+
+        List<StoreStock> all = finder.withinBounds(null, 51.49, -0.01, 51.51, 0.01);
+        assertEquals(4, all.size());
+        assertEquals(Arrays.asList(1, 2, 2, 3), storeIds(all));
+
+        List<StoreStock> milk = finder.withinBounds("MILK", 51.49, -0.01, 51.51, 0.01);
+        assertEquals(Arrays.asList(1, 2, 3), storeIds(milk));
+    }
+
+    @Test
+    public void pointsOnTheBoxEdgeAreInside() {
+        FakeDao dao = new FakeDao();
+        dao.add(1, 51.49, -0.01, "milk");
+        dao.add(2, 51.51, 0.01, "milk");
+        dao.add(3, 51.51, 0.0100001, "milk");
+        NearbyPurchaseFinder finder = new NearbyPurchaseFinder(dao, USER_ID);
+
+        assertEquals(Arrays.asList(1, 2), storeIds(finder.withinBounds(null, 51.49, -0.01, 51.51, 0.01)));
+    }
+
+    @Test
+    public void largeBoxFallsBackToCoarserCells() {
+        FakeDao dao = new FakeDao();
+        dao.add(1, 51.0, -1.0, "milk");
+        dao.add(2, 52.0, 1.0, "milk");
+        dao.add(3, 53.0, 0.0, "milk");
+        NearbyPurchaseFinder finder = new NearbyPurchaseFinder(dao, USER_ID);
+
+        assertEquals(Arrays.asList(1, 2), storeIds(finder.withinBounds(null, 51.0, -1.0, 52.0, 1.0)));
+        // Stays within the cell budget instead of scanning thousands of fine cells
+        assertTrue(dao.cellScans <= 16);
+    }
+
+    @Test
+    public void matchesALinearScanOverRandomBoxes() {
+        Random random = new Random(42);
+        FakeDao dao = new FakeDao();
+        // Spread over the prime meridian, so boxes keep crossing cell edges at every precision
+        for (int i = 0; i < 400; i++) {
+            double lat = 51.5 + (random.nextDouble() - 0.5) * 0.2;
+            double lng = (random.nextDouble() - 0.5) * 0.2;
+            dao.add(i, lat, lng, "item");
+        }
+        NearbyPurchaseFinder finder = new NearbyPurchaseFinder(dao, USER_ID);
+
+        for (int trial = 0; trial < 200; trial++) {
+            double minLat = 51.4 + random.nextDouble() * 0.2;
+            double minLng = -0.1 + random.nextDouble() * 0.2;
+            double maxLat = minLat + random.nextDouble() * 0.05;
+            double maxLng = minLng + random.nextDouble() * 0.05;
+
+            List<StoreStock> expected = new ArrayList<>();
+            for (StoreStock row : dao.rows) {
+                if (row.lat >= minLat && row.lat <= maxLat && row.lng >= minLng && row.lng <= maxLng) {
+                    expected.add(row);
+                }
+            }
+            assertEquals(storeIds(expected), storeIds(finder.withinBounds(null, minLat, minLng, maxLat, maxLng)));
+        }
+    }
+}
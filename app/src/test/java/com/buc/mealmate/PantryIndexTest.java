@@ -0,0 +1,153 @@
+package com.buc.mealmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class PantryIndexTest {
+
+    private static List<Integer> rankedIds(PantryIndex index, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        for (PantryIndex.Match match : index.rank(limit)) ids.add(match.recipeId);
+        return ids;
+    }
+
+    @Test
+    public void ranksByFewestMissingThenMostOnHand() {
+        PantryIndex index = PantryIndex.detached();
+        index.addRecipe(1, "Omelette", Arrays.asList("eggs", "butter", "chives"));
+        index.addRecipe(2, "Toast", Arrays.asList("bread", "butter"));
+        index.addRecipe(3, "Water", Collections.emptyList());
+        index.addRecipe(4, "Scrambled eggs", Arrays.asList("eggs", "butter", "milk", "salt"));
+        index.adjustPantry(Arrays.asList("eggs", "butter", "milk"), 1);
+
+        // 4 and 1 miss one each, 4 has more on hand; 2 misses one with less on hand; empty last
+        assertEquals(Arrays.asList(4, 1, 2, 3), rankedIds(index, 10));
+        PantryIndex.Match first = index.rank(1).get(0);
+        assertEquals(3, first.onHand);
+        assertEquals(4, first.required);
+    }
+
+    @Test
+    public void namesMatchTrimmedAndCaseInsensitively() {
+        PantryIndex index = PantryIndex.detached();
+        index.addRecipe(1, "Soup", Arrays.asList("Leek ", "POTATO", "leek", " "));
+        index.adjustPantry(Arrays.asList("leek", " potato"), 1);
+
+        PantryIndex.Match match = index.rank(1).get(0);
+        assertEquals(2, match.required);
+        assertEquals(2, match.onHand);
+    }
+
+    @Test
+    public void pantryItemStaysWhileAnyRecipeHasItPurchased() {
+        PantryIndex index = PantryIndex.detached();
+        index.addRecipe(1, "A", Collections.singletonList("flour"));
+        index.addRecipe(2, "B", Collections.singletonList("flour"));
+        index.addRecipe(3, "C", Collections.singletonList("flour"));
+        // Ticked in recipes 1 and 2
+        index.adjustPantry(Arrays.asList("flour", "flour"), 1);
+
+        index.removeRecipes(Collections.singletonList(1), Collections.singletonList("flour"));
+        assertEquals(1, index.rank(1).get(0).onHand);
+
+        index.adjustPantry(Collections.singletonList("flour"), -1);
+        assertEquals(0, index.rank(1).get(0).onHand);
+    }
+
+    @Test
+    public void removingARecipeKeepsTheOthersIntact() {
+        PantryIndex index = PantryIndex.detached();
+        for (int id = 1; id <= 5; id++) index.addRecipe(id, "R" + id, Collections.singletonList("item " + id));
+        index.adjustPantry(Collections.singletonList("item 5"), 1);
+
+        index.removeRecipes(Arrays.asList(2, 4), Collections.emptyList());
+
+        assertEquals(Arrays.asList(5, 1, 3), rankedIds(index, 10));
+        index.addRecipe(2, "R2", Collections.singletonList("item 5"));
+        // Ties keep slot order: the re-added recipe takes the next slot
+        assertEquals(Arrays.asList(5, 2, 1, 3), rankedIds(index, 10));
+    }
+
+    @Test
+    public void recipesSpanningManyWordsCountEveryIngredient() {
+        PantryIndex index = PantryIndex.detached();
+        List<String> many = new ArrayList<>();
+        for (int i = 0; i < 300; i++) many.add("spice " + i);
+        index.addRecipe(1, "Curry", many);
+        index.adjustPantry(many.subList(0, 250), 1);
+
+        PantryIndex.Match match = index.rank(1).get(0);
+        assertEquals(300, match.required);
+        assertEquals(250, match.onHand);
+    }
+
+    @Test
+    public void topKMatchesAFullSort() {
+        Random random = new Random(5);
+        PantryIndex index = PantryIndex.detached();
+        List<int[]> expected = new ArrayList<>();
+        Set<Integer> pantry = new HashSet<>();
+        for (int i = 0; i < 200; i++) if (random.nextInt(3) == 0) pantry.add(i);
+        List<String> pantryNames = new ArrayList<>();
+        for (int i : pantry) pantryNames.add("item " + i);
+
+        for (int id = 1; id <= 2000; id++) {
+            Set<Integer> items = new HashSet<>();
+            int count = random.nextInt(12);
+            while (items.size() < count) items.add(random.nextInt(200));
+            List<String> names = new ArrayList<>();
+            int have = 0;
+            for (int item : items) {
+                names.add("item " + item);
+                if (pantry.contains(item)) have++;
+            }
+            index.addRecipe(id, "R" + id, names);
+            expected.add(new int[]{count == 0 ? Integer.MAX_VALUE : count - have, -have, id});
+        }
+        index.adjustPantry(pantryNames, 1);
+
+        // Ties on (missing, have) fall back to insertion order, which here is id order
+        Collections.sort(expected, (a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0])
+                : a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(a[2], b[2]));
+        for (int limit : new int[]{0, 1, 7, 100, 2000, 5000}) {
+            List<Integer> wanted = new ArrayList<>();
+            for (int i = 0; i < Math.min(limit, expected.size()); i++) wanted.add(expected.get(i)[2]);
+            assertEquals("limit " + limit, wanted, rankedIds(index, limit));
+        }
+    }
+
+    @Test
+    public void ranksFiftyThousandRecipesInMilliseconds() {
+        Random random = new Random(1);
+        PantryIndex index = PantryIndex.detached();
+        for (int id = 1; id <= 50000; id++) {
+            List<String> names = new ArrayList<>(10);
+            for (int k = 0; k < 10; k++) names.add("ingredient " + random.nextInt(3000));
+            index.addRecipe(id, "Recipe " + id, names);
+        }
+        List<String> pantry = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 2) pantry.add("ingredient " + i);
+        index.adjustPantry(pantry, 1);
+
+        for (int warmup = 0; warmup < 50; warmup++) index.rank(50);
+        int runs = 100;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) index.rank(50);
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+
+        System.out.println("PantryIndex: ranked 50000 recipes in " + millis + " ms");
+        // Measured around 1.2 ms on a desktop JVM; the bound only catches a regression in complexity
+        assertTrue(millis + " ms", millis < 50);
+        assertEquals(50, index.rank(50).size());
+    }
+}
@@ -0,0 +1,136 @@
+package com.buc.mealmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SmsEncoderTest {
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void gsm7SegmentBoundaries() {
+        assertEquals(1, SmsEncoder.cost(repeat('a', 160)).segments);
+        assertEquals(2, SmsEncoder.cost(repeat('a', 161)).segments);
+        assertEquals(2, SmsEncoder.cost(repeat('a', 306)).segments);
+        assertEquals(3, SmsEncoder.cost(repeat('a', 307)).segments);
+        assertTrue(SmsEncoder.cost(repeat('a', 307)).gsm7);
+    }
+
+    @Test
+    public void extensionCharactersCostTwoSeptets() {
+        SmsEncoder.Cost cost = SmsEncoder.cost(repeat('a', 159) + "€");
+        assertTrue(cost.gsm7);
+        assertEquals(161, cost.units);
+        assertEquals(2, cost.segments);
+    }
+
+    @Test
+    public void escapePairIsNeverSplitAcrossSegments() {
+        // 306 septets would fill two segments exactly, but the pair can't start at septet 153
+        String text = repeat('a', 152) + "€" + repeat('a', 152);
+        SmsEncoder.Cost cost = SmsEncoder.cost(text);
+        assertEquals(306, cost.units);
+        assertEquals(3, cost.segments);
+
+        // Moved off the boundary, the same septets fit in two
+        assertEquals(2, SmsEncoder.cost(repeat('a', 151) + "€" + repeat('a', 153)).segments);
+    }
+
+    @Test
+    public void oneNonGsmCharacterSwitchesToUcs2() {
+        assertEquals(1, SmsEncoder.cost(repeat('a', 69) + "ж").segments);
+        SmsEncoder.Cost cost = SmsEncoder.cost(repeat('a', 70) + "ж");
+        assertFalse(cost.gsm7);
+        assertEquals(71, cost.units);
+        assertEquals(2, cost.segments);
+        assertEquals(2, SmsEncoder.cost(repeat('a', 133) + "ж").segments);
+        assertEquals(3, SmsEncoder.cost(repeat('a', 134) + "ж").segments);
+    }
+
+    @Test
+    public void transliterationKeepsTextInGsm7() {
+        String text = SmsEncoder.transliterate("“Crème brûlée” – ½ cup sugar…");
+        assertEquals("\"Crème brulée\" - 1/2 cup sugar...", text);
+        assertTrue(SmsEncoder.cost(text).gsm7);
+    }
+
+    @Test
+    public void transliterationKeepsCharactersWithoutReplacement() {
+        String text = SmsEncoder.transliterate("Борщ 🍲");
+        assertEquals("Борщ 🍲", text);
+        assertFalse(SmsEncoder.cost(text).gsm7);
+    }
+
+    @Test
+    public void packFillsSegmentSlack() {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) texts.add("Recipe " + i + ": " + repeat('x', 30));
+        List<String> messages = SmsEncoder.pack(texts);
+
+        assertEquals(1, messages.size());
+        assertEquals(3, SmsEncoder.totalSegments(messages));
+        assertEquals(10, SmsEncoder.totalSegments(texts));
+        assertSameTexts(texts, messages);
+    }
+
+    @Test
+    public void packNeverJoinsUcs2WithGsm7() {
+        List<String> texts = Arrays.asList("Soup: leek,potato", "Борщ: свёкла", "Salad: kale", "Щи: капуста");
+        List<String> messages = SmsEncoder.pack(texts);
+
+        assertEquals(2, messages.size());
+        assertTrue(SmsEncoder.cost(messages.get(0)).gsm7);
+        assertFalse(SmsEncoder.cost(messages.get(1)).gsm7);
+        assertFalse(messages.get(0).contains("Борщ"));
+        assertSameTexts(texts, messages);
+    }
+
+    @Test
+    public void packCapsMessagesAtSixSegments() {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) texts.add(i + repeat('y', 100));
+        List<String> messages = SmsEncoder.pack(texts);
+
+        for (String message : messages) assertTrue(SmsEncoder.cost(message).segments <= 6);
+        assertTrue(SmsEncoder.totalSegments(messages) < SmsEncoder.totalSegments(texts));
+        assertSameTexts(texts, messages);
+    }
+
+    @Test
+    public void packCountsEscapesPushedPastASegmentBoundary() {
+        // Each '€' lands on a boundary and moves to the next segment whole: six segments in
+        // 770 septets. The other text and separator fit in the 148 septets left under the cap,
+        // but joined they would need a seventh segment
+        StringBuilder euros = new StringBuilder();
+        for (int i = 0; i < 5; i++) euros.append(repeat('x', 152)).append('€');
+        List<String> texts = Arrays.asList(euros.toString(), repeat('y', 146));
+        assertEquals(6, SmsEncoder.cost(texts.get(0)).segments);
+
+        List<String> messages = SmsEncoder.pack(texts);
+        for (String message : messages) assertTrue(SmsEncoder.cost(message).segments <= 6);
+        assertEquals(2, messages.size());
+        assertSameTexts(texts, messages);
+    }
+
+    // Every text lands in exactly one message, whole
+    private static void assertSameTexts(List<String> texts, List<String> messages) {
+        List<String> unpacked = new ArrayList<>();
+        for (String message : messages) unpacked.addAll(Arrays.asList(message.split("\n\n")));
+        List<String> expected = new ArrayList<>(texts);
+        Collections.sort(expected);
+        Collections.sort(unpacked);
+        assertEquals(expected, unpacked);
+    }
+}
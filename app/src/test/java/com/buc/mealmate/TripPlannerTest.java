@@ -0,0 +1,219 @@
+package com.buc.mealmate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.buc.mealmate.data.StoreStock;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class TripPlannerTest {
+
+    // On the equator a step east is ~1.1 km, so positions read as points on a line
+    private static final double STEP = 0.01;
+
+    private static void stock(List<StoreStock> stock, int storeId, double x, String... ingredients) {
+        for (String ingredient : ingredients) {
+            StoreStock row = new StoreStock();
+            row.storeId = storeId;
+            row.storeName = "Store " + storeId;
+            row.lat = 0;
+            row.lng = x * STEP;
+            row.ingredient = ingredient;
+            stock.add(row);
+        }
+    }
+
+    private static List<String> stopNames(TripPlanner.Plan plan) {
+        List<String> names = new ArrayList<>();
+        for (TripPlanner.Stop stop : plan.stops) names.add(stop.storeName);
+        return names;
+    }
+
+    @Test
+    public void greedyCoverPrefersOneStoreStockingEverything() {
+        List<StoreStock> stock = new ArrayList<>();
+        stock(stock, 1, 1, "milk");
+        stock(stock, 2, 2, "eggs");
+        stock(stock, 3, 3, "flour");
+        stock(stock, 4, 5, "milk", "eggs", "flour");
+        stock(stock, 5, 6, "butter");
+
+        TripPlanner.Plan plan = TripPlanner.plan(Arrays.asList("milk", "eggs", "flour", "butter", "saffron"),
+                stock, 0, 0);
+
+        assertEquals(Arrays.asList("Store 4", "Store 5"), stopNames(plan));
+        assertEquals(Arrays.asList("milk", "eggs", "flour"), plan.stops.get(0).ingredients);
+        assertEquals(Collections.singletonList("saffron"), plan.unplaced);
+    }
+
+    @Test
+    public void ingredientsMatchCaseInsensitivelyAndOnce() {
+        List<StoreStock> stock = new ArrayList<>();
+        stock(stock, 1, 1, "MILK");
+
+        TripPlanner.Plan plan = TripPlanner.plan(Arrays.asList("Milk", " milk ", null), stock, 0, 0);
+
+        assertEquals(1, plan.stops.size());
+        assertEquals(Collections.singletonList("Milk"), plan.stops.get(0).ingredients);
+        assertTrue(plan.unplaced.isEmpty());
+    }
+
+    @Test
+    public void twoOptUndoesANearestNeighbourDetour() {
+        // Nearest neighbour from 0 goes +1, -2, +4 (10 steps); going -2 first is 8
+        List<StoreStock> stock = new ArrayList<>();
+        stock(stock, 1, 1, "a");
+        stock(stock, 2, -2, "b");
+        stock(stock, 3, 4, "c");
+
+        TripPlanner.Plan plan = TripPlanner.plan(Arrays.asList("a", "b", "c"), stock, 0, 0);
+
+        assertEquals(Arrays.asList("Store 2", "Store 1", "Store 3"), stopNames(plan));
+        assertEquals(8 * metresPerStep(), plan.totalMetres, 1);
+    }
+
+    @Test
+    public void withoutAStartTheRouteBeginsAtAStop() {
+        List<StoreStock> stock = new ArrayList<>();
+        stock(stock, 1, 0, "a");
+        stock(stock, 2, 3, "b");
+
+        TripPlanner.Plan plan = TripPlanner.plan(Arrays.asList("a", "b"), stock, Double.NaN, Double.NaN);
+
+        assertEquals(2, plan.stops.size());
+        assertEquals(0, plan.stops.get(0).legMetres, 0);
+        assertEquals(3 * metresPerStep(), plan.totalMetres, 1);
+    }
+
+    @Test
+    public void nothingStockedLeavesEverythingUnplaced() {
+        TripPlanner.Plan plan = TripPlanner.plan(Arrays.asList("a", "b"), new ArrayList<>(), 0, 0);
+        assertTrue(plan.stops.isEmpty());
+        assertEquals(Arrays.asList("a", "b"), plan.unplaced);
+        assertEquals(0, plan.totalMetres, 0);
+    }
+
+    @Test
+    public void routesAreTwoOptLocalOptima() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 200; trial++) {
+            // One ingredient per store, so every store is a stop and none is dropped after ordering
+            int stores = 2 + random.nextInt(9);
+            List<StoreStock> stock = new ArrayList<>();
+            List<String> missing = new ArrayList<>();
+            for (int s = 0; s < stores; s++) {
+                StoreStock row = new StoreStock();
+                row.storeId = s;
+                row.storeName = "Store " + s;
+                row.lat = random.nextDouble() * 0.1;
+                row.lng = random.nextDouble() * 0.1;
+                row.ingredient = "item " + s;
+                stock.add(row);
+                missing.add(row.ingredient);
+            }
+
+            TripPlanner.Plan plan = TripPlanner.plan(missing, stock, 0.05, 0.05);
+
+            assertEquals(stores, plan.stops.size());
+            double[][] points = new double[stores + 1][];
+            points[0] = new double[]{0.05, 0.05};
+            for (int i = 0; i < stores; i++) {
+                points[i + 1] = new double[]{plan.stops.get(i).lat, plan.stops.get(i).lng};
+            }
+            double length = pathLength(points);
+            assertEquals(length, plan.totalMetres, 1e-6);
+            for (int i = 1; i < points.length - 1; i++) {
+                for (int j = i + 1; j < points.length; j++) {
+                    double[][] reversed = points.clone();
+                    Collections.reverse(Arrays.asList(reversed).subList(i, j + 1));
+                    assertTrue("trial " + trial, pathLength(reversed) >= length - 1e-3);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void everyIngredientGoesToOneStopThatStocksIt() {
+        Random random = new Random(3);
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < 60; i++) missing.add("item " + i);
+        List<StoreStock> stock = randomStock(random, missing, 15, 12);
+
+        TripPlanner.Plan plan = TripPlanner.plan(missing, stock, 51.5, -0.1);
+
+        Map<String, Set<String>> stocked = new HashMap<>();
+        for (StoreStock row : stock) {
+            stocked.computeIfAbsent(row.storeName, k -> new HashSet<>()).add(row.ingredient);
+        }
+        Set<String> seen = new HashSet<>(plan.unplaced);
+        for (TripPlanner.Stop stop : plan.stops) {
+            assertTrue(stop.ingredients.size() > 0);
+            for (String ingredient : stop.ingredients) {
+                assertTrue(stocked.get(stop.storeName).contains(ingredient));
+                assertTrue("assigned twice: " + ingredient, seen.add(ingredient));
+            }
+        }
+        assertEquals(new HashSet<>(missing), seen);
+    }
+
+    @Test
+    public void plansHundredsOfIngredientsAcrossDozensOfStoresQuickly() {
+        Random random = new Random(42);
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < 400; i++) missing.add("item " + i);
+        List<StoreStock> stock = randomStock(random, missing, 60, 40);
+
+        for (int warmup = 0; warmup < 20; warmup++) TripPlanner.plan(missing, stock, 51.5, -0.1);
+        int runs = 50;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) TripPlanner.plan(missing, stock, 51.5, -0.1);
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+
+        System.out.println("TripPlanner: 400 ingredients x 60 stores in " + millis + " ms");
+        // Measured around 1 ms on a desktop JVM; the bound only catches a regression in complexity
+        assertTrue(millis + " ms", millis < 50);
+    }
+
+    // Each store stocks perStore random ingredients, within ~10 km of central London
+    private static List<StoreStock> randomStock(Random random, List<String> ingredients, int stores, int perStore) {
+        List<StoreStock> stock = new ArrayList<>();
+        for (int s = 0; s < stores; s++) {
+            double lat = 51.45 + random.nextDouble() * 0.1;
+            double lng = -0.2 + random.nextDouble() * 0.2;
+            for (int k = 0; k < perStore; k++) {
+                StoreStock row = new StoreStock();
+                row.storeId = s;
+                row.storeName = "Store " + s;
+                row.lat = lat;
+                row.lng = lng;
+                row.ingredient = ingredients.get(random.nextInt(ingredients.size()));
+                stock.add(row);
+            }
+        }
+        return stock;
+    }
+
+    private static double pathLength(double[][] points) {
+        double total = 0;
+        for (int i = 1; i < points.length; i++) {
+            total += NearbyPurchaseFinder.distanceMetres(points[i - 1][0], points[i - 1][1],
+                    points[i][0], points[i][1]);
+        }
+        return total;
+    }
+
+    private static double metresPerStep() {
+        return NearbyPurchaseFinder.distanceMetres(0, 0, 0, STEP);
+    }
+}